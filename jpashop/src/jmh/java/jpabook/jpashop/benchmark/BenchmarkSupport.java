@@ -0,0 +1,67 @@
+package jpabook.jpashop.benchmark;
+
+import jpabook.jpashop.JpashopApplication;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.function.Supplier;
+
+/**
+ * 벤치마크 공통 - jmh 프로파일(H2 메모리 DB)로 스프링 컨텍스트를 띄우고 SQL 실행 수를 측정
+ */
+class BenchmarkSupport {
+
+    private final ConfigurableApplicationContext context;
+    private final TransactionTemplate readOnlyTx;
+    private final TransactionTemplate tx;
+    private final Statistics statistics;
+
+    private BenchmarkSupport(ConfigurableApplicationContext context) {
+        this.context = context;
+        PlatformTransactionManager transactionManager = context.getBean(PlatformTransactionManager.class);
+        this.tx = new TransactionTemplate(transactionManager);
+        this.readOnlyTx = new TransactionTemplate(transactionManager);
+        this.readOnlyTx.setReadOnly(true);
+        this.statistics = context.getBean(EntityManagerFactory.class).unwrap(SessionFactory.class).getStatistics();
+    }
+
+    static BenchmarkSupport start() {
+        System.setProperty("spring.devtools.restart.enabled", "false");
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(JpashopApplication.class)
+                .profiles("jmh")
+                .web(WebApplicationType.NONE)
+                .logStartupInfo(false)
+                .run();
+        return new BenchmarkSupport(context);
+    }
+
+    <T> T getBean(Class<T> type) {
+        return context.getBean(type);
+    }
+
+    // 읽기 전용 트랜잭션 안에서 실행하고 실행된 SQL 수를 counters 에 누적
+    <T> T readOnly(SqlCounters counters, Supplier<T> action) {
+        return measure(counters, readOnlyTx, action);
+    }
+
+    <T> T write(SqlCounters counters, Supplier<T> action) {
+        return measure(counters, tx, action);
+    }
+
+    private <T> T measure(SqlCounters counters, TransactionTemplate template, Supplier<T> action) {
+        long before = statistics.getPrepareStatementCount();
+        T result = template.execute(status -> action.get());
+        counters.statements += statistics.getPrepareStatementCount() - before;
+        return result;
+    }
+
+    void close() {
+        context.close();
+    }
+}
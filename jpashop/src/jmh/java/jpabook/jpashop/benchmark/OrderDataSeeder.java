@@ -0,0 +1,98 @@
+package jpabook.jpashop.benchmark;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 벤치마크용 주문 데이터 적재
+ * JPA 로 수백만 건을 persist 하면 적재 시간이 측정보다 길어지기 때문에 JDBC batch insert 사용
+ * 주문 하나당 주문상품 2개, 회원 1명당 주문 10개 비율 (회원 수를 지정하지 않으면)
+ */
+class OrderDataSeeder {
+
+    // InitDb 및 시퀀스가 만드는 id 와 겹치지 않도록 큰 값부터 시작
+    static final long ID_BASE = 1_000_000_000L;
+    private static final int ITEM_COUNT = 1000;
+    private static final int BATCH_SIZE = 1000;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    OrderDataSeeder(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    void seed(int orderCount) {
+        seed(orderCount, Math.max(1, orderCount / 10));
+    }
+
+    void seed(int orderCount, int memberCount) {
+        insertMembers(memberCount);
+        insertItems();
+        insertOrders(orderCount, memberCount);
+    }
+
+    private void insertMembers(int memberCount) {
+        List<Object[]> rows = new ArrayList<>(BATCH_SIZE);
+        for (int i = 0; i < memberCount; i++) {
+            rows.add(new Object[]{ID_BASE + i, "member" + i, "서울", "street" + i, "zip" + i});
+            flushIfFull("insert into member (member_id, name, city, street, zipcode) values (?, ?, ?, ?, ?)", rows);
+        }
+        flush("insert into member (member_id, name, city, street, zipcode) values (?, ?, ?, ?, ?)", rows);
+    }
+
+    private void insertItems() {
+        List<Object[]> rows = new ArrayList<>(BATCH_SIZE);
+        for (int i = 0; i < ITEM_COUNT; i++) {
+            rows.add(new Object[]{ID_BASE + i, "book" + i, 10000 + i, Integer.MAX_VALUE, "author" + i, "isbn" + i});
+            flushIfFull("insert into item (dtype, item_id, name, price, stock_quantity, author, isbn, version) values ('B', ?, ?, ?, ?, ?, ?, 0)", rows);
+        }
+        flush("insert into item (dtype, item_id, name, price, stock_quantity, author, isbn, version) values ('B', ?, ?, ?, ?, ?, ?, 0)", rows);
+    }
+
+    private void insertOrders(int orderCount, int memberCount) {
+        String deliverySql = "insert into delivery (delivery_id, city, street, zipcode, status) values (?, '서울', 'street', 'zip', 'READY')";
+        String orderSql = "insert into orders (order_id, member_id, delivery_id, order_date, status, version) values (?, ?, ?, ?, 'ORDER', 0)";
+        String orderItemSql = "insert into order_item (order_item_id, order_id, item_id, order_price, count) values (?, ?, ?, ?, ?)";
+
+        List<Object[]> deliveries = new ArrayList<>(BATCH_SIZE);
+        List<Object[]> orders = new ArrayList<>(BATCH_SIZE);
+        List<Object[]> orderItems = new ArrayList<>(BATCH_SIZE * 2);
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+
+        for (int i = 0; i < orderCount; i++) {
+            long orderId = ID_BASE + i;
+            deliveries.add(new Object[]{orderId});
+            orders.add(new Object[]{orderId, ID_BASE + (i % memberCount), orderId, now});
+            for (int j = 0; j < 2; j++) {
+                int item = (i * 2 + j) % ITEM_COUNT;
+                orderItems.add(new Object[]{ID_BASE + i * 2L + j, orderId, ID_BASE + item, 10000 + item, 1 + j});
+            }
+
+            if (orders.size() == BATCH_SIZE) {
+                flush(deliverySql, deliveries);
+                flush(orderSql, orders);
+                flush(orderItemSql, orderItems);
+            }
+        }
+        flush(deliverySql, deliveries);
+        flush(orderSql, orders);
+        flush(orderItemSql, orderItems);
+    }
+
+    private void flushIfFull(String sql, List<Object[]> rows) {
+        if (rows.size() == BATCH_SIZE) {
+            flush(sql, rows);
+        }
+    }
+
+    private void flush(String sql, List<Object[]> rows) {
+        if (!rows.isEmpty()) {
+            jdbcTemplate.batchUpdate(sql, rows);
+            rows.clear();
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package jpabook.jpashop.benchmark;
+
+import jpabook.jpashop.domain.Order;
+import jpabook.jpashop.repository.OrderRepository;
+import jpabook.jpashop.repository.order.query.OrderQueryDto;
+import jpabook.jpashop.repository.order.query.OrderQueryRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * OrderReadBenchmark 중 전체 주문을 엔티티로 영속성 컨텍스트에 올리거나 주문마다 쿼리하는 방식
+ * 100만 건이면 힙(-Xmx4g)을 넘거나 측정 한 번에 100만 번 쿼리하므로 10만 건까지만 측정
+ *
+ * ./gradlew jmh -Pjmh.includes=OrderFullLoadBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class OrderFullLoadBenchmark {
+
+    @Param({"1000", "100000"})
+    public int orderCount;
+
+    private BenchmarkSupport support;
+    private OrderRepository orderRepository;
+    private OrderQueryRepository orderQueryRepository;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        support = BenchmarkSupport.start();
+        new OrderDataSeeder(support.getBean(JdbcTemplate.class)).seed(orderCount);
+
+        orderRepository = support.getBean(OrderRepository.class);
+        orderQueryRepository = support.getBean(OrderQueryRepository.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        support.close();
+    }
+
+    // V3 - 컬렉션 페치 조인
+    @Benchmark
+    public List<Order> v3_findAllWithItem(SqlCounters counters) {
+        return support.readOnly(counters, () -> OrderReadBenchmark.initialize(orderRepository.findAllWithItem()));
+    }
+
+    // V4 - DTO 직접 조회 (N+1)
+    @Benchmark
+    public List<OrderQueryDto> v4_findOrderQueryDtos(SqlCounters counters) {
+        return support.readOnly(counters, () -> orderQueryRepository.findOrderQueryDtos());
+    }
+
+    // simple-orders V3 - ToOne 페치 조인 (엔티티 생성 + 영속성 컨텍스트 등록)
+    @Benchmark
+    public List<Order> simpleV3_findAllWithMemberDelivery(SqlCounters counters) {
+        return support.readOnly(counters, () -> {
+            List<Order> orders = orderRepository.findAllWithMemberDelivery();
+            orders.forEach(o -> o.getDelivery().getAddress());
+            return orders;
+        });
+    }
+}
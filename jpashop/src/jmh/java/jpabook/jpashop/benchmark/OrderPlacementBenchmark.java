@@ -0,0 +1,54 @@
+package jpabook.jpashop.benchmark;
+
+import jpabook.jpashop.service.OrderService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.concurrent.TimeUnit;
+
+import static jpabook.jpashop.benchmark.OrderDataSeeder.ID_BASE;
+
+/**
+ * 회원의 주문 이력 크기에 따른 OrderService.order 지연 시간
+ * Member.orders 를 로딩하지 않으면 이력이 0건이든 10만건이든 지연 시간과 SQL 수가 같아야 함
+ *
+ * ./gradlew jmh -Pjmh.includes=OrderPlacementBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class OrderPlacementBenchmark {
+
+    @Param({"0", "1000", "100000"})
+    public int orderHistory;
+
+    private BenchmarkSupport support;
+    private OrderService orderService;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        support = BenchmarkSupport.start();
+        // 회원 한 명이 orderHistory 건의 주문 이력을 가짐
+        new OrderDataSeeder(support.getBean(JdbcTemplate.class)).seed(orderHistory, 1);
+        orderService = support.getBean(OrderService.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        support.close();
+    }
+
+    @Benchmark
+    public Long order(SqlCounters counters) {
+        return support.write(counters, () -> orderService.order(ID_BASE, ID_BASE, 1));
+    }
+}
@@ -0,0 +1,112 @@
+package jpabook.jpashop.benchmark;
+
+import jpabook.jpashop.domain.Order;
+import jpabook.jpashop.repository.OrderRepository;
+import jpabook.jpashop.repository.OrderSearch;
+import jpabook.jpashop.repository.order.query.OrderFlatDto;
+import jpabook.jpashop.repository.order.query.OrderQueryDto;
+import jpabook.jpashop.repository.order.query.OrderQueryRepository;
+import jpabook.jpashop.repository.order.simplequery.OrderSimpleJdbcRepository;
+import jpabook.jpashop.repository.order.simplequery.OrderSimpleQueryDto;
+import jpabook.jpashop.repository.order.simplequery.OrderSimpleQueryRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * OrderApiController / OrderSimpleApiController 의 조회 방식별 성능 비교
+ * 엔티티 조회 방식은 컨트롤러의 DTO 변환과 같이 연관 엔티티를 모두 초기화해서 측정
+ *
+ * ./gradlew jmh -Pjmh.includes=OrderReadBenchmark
+ * 결과 : 처리량(ops/s), gc 프로파일러의 할당률(gc.alloc.rate.norm), statements(SQL 실행 수)
+ *
+ * 전체 주문을 엔티티로 올리거나 주문마다 쿼리하는 방식(V3, V4, simple-orders V3)은 100만 건이면
+ * 힙(-Xmx4g)을 넘거나 한 번에 100만 번 쿼리하므로 OrderFullLoadBenchmark 에서 10만 건까지만 측정
+ * V1, V2 는 검색(jpashop.order.search.max-results)이라 주문 수와 상관없이 최대 1000 건만 조회
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class OrderReadBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    public int orderCount;
+
+    private BenchmarkSupport support;
+    private OrderRepository orderRepository;
+    private OrderQueryRepository orderQueryRepository;
+    private OrderSimpleQueryRepository orderSimpleQueryRepository;
+    private OrderSimpleJdbcRepository orderSimpleJdbcRepository;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        support = BenchmarkSupport.start();
+        new OrderDataSeeder(support.getBean(JdbcTemplate.class)).seed(orderCount);
+
+        orderRepository = support.getBean(OrderRepository.class);
+        orderQueryRepository = support.getBean(OrderQueryRepository.class);
+        orderSimpleQueryRepository = support.getBean(OrderSimpleQueryRepository.class);
+        orderSimpleJdbcRepository = support.getBean(OrderSimpleJdbcRepository.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        support.close();
+    }
+
+    // V1, V2 - 엔티티 조회 후 지연 로딩 (N+1), 최대 max-results 건
+    @Benchmark
+    public List<Order> v2_findAllByString(SqlCounters counters) {
+        return support.readOnly(counters, () -> initialize(orderRepository.findAllByString(new OrderSearch())));
+    }
+
+    // V3.1 - ToOne 페치 조인 + 컬렉션 batch fetch (첫 페이지)
+    @Benchmark
+    public List<Order> v3_1_findAllWithMemberDelivery(SqlCounters counters) {
+        return support.readOnly(counters, () -> initialize(orderRepository.findAllWithMemberDelivery(0, 100)));
+    }
+
+    // V5 - DTO 직접 조회 + IN 절 컬렉션 조회
+    @Benchmark
+    public List<OrderQueryDto> v5_findAllByDto_optimization(SqlCounters counters) {
+        return support.readOnly(counters, () -> orderQueryRepository.findAllByDto_optimization());
+    }
+
+    // V6 - 플랫 데이터 조회
+    @Benchmark
+    public List<OrderFlatDto> v6_findAllByDto_flat(SqlCounters counters) {
+        return support.readOnly(counters, () -> orderQueryRepository.findAllByDto_flat());
+    }
+
+    // simple-orders V4 - ToOne 만 DTO 직접 조회
+    @Benchmark
+    public List<OrderSimpleQueryDto> simpleV4_findOrderDtos(SqlCounters counters) {
+        return support.readOnly(counters, () -> orderSimpleQueryRepository.findOrderDtos());
+    }
+
+    // simple-orders V5 - JdbcTemplate 로 ResultSet 에서 바로 DTO 생성
+    @Benchmark
+    public List<OrderSimpleQueryDto> simpleV5_jdbc(SqlCounters counters) {
+        return support.readOnly(counters, () -> orderSimpleJdbcRepository.findOrderDtos());
+    }
+
+    static List<Order> initialize(List<Order> orders) {
+        for (Order order : orders) {
+            order.getMember().getName();
+            order.getDelivery().getAddress();
+            order.getOrderItems().forEach(oi -> oi.getItem().getName());
+        }
+        return orders;
+    }
+}
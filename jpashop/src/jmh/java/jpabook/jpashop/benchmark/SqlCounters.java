@@ -0,0 +1,22 @@
+package jpabook.jpashop.benchmark;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * iteration 동안 실행된 SQL 수 (결과의 statements / 연산 수 = 연산당 SQL 수)
+ */
+@State(Scope.Thread)
+@AuxCounters(AuxCounters.Type.EVENTS)
+public class SqlCounters {
+
+    public long statements;
+
+    @Setup(Level.Iteration)
+    public void reset() {
+        statements = 0;
+    }
+}
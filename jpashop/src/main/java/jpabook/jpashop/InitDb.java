@@ -2,14 +2,18 @@ package jpabook.jpashop;
 
 import jpabook.jpashop.domain.*;
 import jpabook.jpashop.domain.item.Book;
+import jpabook.jpashop.ledger.StockLedger;
 import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Component;
 import org.springframework.transaction.annotation.Transactional;
 
 import javax.annotation.PostConstruct;
 import javax.persistence.EntityManager;
 
+// 대량 데이터를 생성할 때는 (BulkDataGenerator) 예제 데이터를 넣지 않음
 @Component
+@ConditionalOnProperty(name = "jpashop.datagen.enabled", havingValue = "false", matchIfMissing = true)
 @RequiredArgsConstructor
 public class InitDb {
 
@@ -26,6 +30,8 @@ public class InitDb {
     @RequiredArgsConstructor
     static class InitService{
         private final EntityManager em;
+        private final StockLedger stockLedger;
+
         public void dbInit1() {
             Member member = createMember("UserA", "서울", "1", "1111");
             em.persist(member);
@@ -33,10 +39,12 @@ public class InitDb {
             Book book1 = new Book();
             createBook(book1, "JPA1 Book", 10000, 100);
             em.persist(book1);
+            stockLedger.recordInit(book1);
 
             Book book2 = new Book();
             createBook(book2, "JPA2 Book", 20000, 100);
             em.persist(book2);
+            stockLedger.recordInit(book2);
 
             OrderItem orderItem1 = OrderItem.createOrderItem(book1, 10000, 1);
             OrderItem orderItem2 = OrderItem.createOrderItem(book2, 20000, 2);
@@ -45,6 +53,7 @@ public class InitDb {
 
             Order order = Order.createOrder(member, delivery, orderItem1, orderItem2);
             em.persist(order);
+            stockLedger.recordOrder(order);
         }
 
         public void dbInit2() {
@@ -54,10 +63,12 @@ public class InitDb {
             Book book1 = new Book();
             createBook(book1, "SPRING1 Book", 20000, 200);
             em.persist(book1);
+            stockLedger.recordInit(book1);
 
             Book book2 = new Book();
             createBook(book2, "SPRING2 Book", 40000, 300);
             em.persist(book2);
+            stockLedger.recordInit(book2);
 
             OrderItem orderItem1 = OrderItem.createOrderItem(book1, 20000, 3);
             OrderItem orderItem2 = OrderItem.createOrderItem(book2, 40000, 4);
@@ -66,6 +77,7 @@ public class InitDb {
 
             Order order = Order.createOrder(member, delivery, orderItem1, orderItem2);
             em.persist(order);
+            stockLedger.recordOrder(order);
         }
 
         private static Delivery createDelivery(Member member) {
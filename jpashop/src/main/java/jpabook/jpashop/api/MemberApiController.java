@@ -1,13 +1,17 @@
 package jpabook.jpashop.api;
 
+import jpabook.jpashop.cache.CachedResponses;
+import jpabook.jpashop.cache.MemberDtoCache;
 import jpabook.jpashop.domain.Member;
 import jpabook.jpashop.service.MemberService;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import javax.servlet.http.HttpServletRequest;
 import javax.validation.Valid;
 import java.util.List;
 import java.util.stream.Collectors;
@@ -17,19 +21,23 @@ import java.util.stream.Collectors;
 public class MemberApiController {
 
     private final MemberService memberService;
+    private final CachedResponses cachedResponses;
 
     @GetMapping("/api/v1/members")
     public List<Member> membersV1(){
         return memberService.findMembers();
     }
 
+    // 직렬화된 응답을 캐싱, 가입/이름 변경 전까지는 If-None-Match 에 304 응답 (MemberDtoCache)
     @GetMapping("/api/v2/members")
-    public Result membersV2(){
-        List<Member> findMembers = memberService.findMembers();
-        List<MemberDto> collect = findMembers.stream()
-                .map(m -> new MemberDto(m.getName()))
-                .collect(Collectors.toList());
-        return new Result(collect);
+    public ResponseEntity<byte[]> membersV2(HttpServletRequest request){
+        return cachedResponses.respond(request, MemberDtoCache.MEMBERS, () -> {
+            List<Member> findMembers = memberService.findMembers();
+            List<MemberDto> collect = findMembers.stream()
+                    .map(m -> new MemberDto(m.getName()))
+                    .collect(Collectors.toList());
+            return new Result(collect);
+        });
     }
 
     @Data
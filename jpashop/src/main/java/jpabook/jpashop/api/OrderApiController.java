@@ -1,21 +1,35 @@
 package jpabook.jpashop.api;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jpabook.jpashop.cache.CachedResponses;
+import jpabook.jpashop.cache.OrderDtoCache;
 import jpabook.jpashop.domain.Address;
 import jpabook.jpashop.domain.Order;
 import jpabook.jpashop.domain.OrderItem;
 import jpabook.jpashop.domain.OrderStatus;
+import jpabook.jpashop.repository.OrderCursor;
 import jpabook.jpashop.repository.OrderRepository;
 import jpabook.jpashop.repository.OrderSearch;
 import jpabook.jpashop.repository.order.query.OrderFlatDto;
 import jpabook.jpashop.repository.order.query.OrderItemQueryDto;
 import jpabook.jpashop.repository.order.query.OrderQueryDto;
 import jpabook.jpashop.repository.order.query.OrderQueryRepository;
+import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
 
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.stream.Collectors;
@@ -25,8 +39,13 @@ import static java.util.stream.Collectors.*;
 @RestController
 @RequiredArgsConstructor
 public class OrderApiController {
+    private static final int MAX_CURSOR_LIMIT = 1000;
+    private static final int STREAM_FETCH_SIZE = 1000;
+
     private final OrderRepository orderRepository;
     private final OrderQueryRepository orderQueryRepository;
+    private final ObjectMapper objectMapper;
+    private final CachedResponses cachedResponses;
 
     /**
      * 조회 방식 권장 순서
@@ -98,6 +117,42 @@ public class OrderApiController {
         return collect;
     }
 
+    // 키셋(커서) 페이징 - V3.1 의 offset 은 뒤 페이지로 갈수록 건너뛴 row 를 모두 읽고 버리기 때문에 느려짐
+    // 마지막 order_id (sort=orderDate 이면 주문시간 + order_id) 를 커서 토큰으로 내려주고 다음 요청은 그 다음부터 조회
+    // 컬렉션은 V3.1 과 같이 hibernate.default_batch_fetch_size 로 최적화
+    @GetMapping("/api/v3.2/orders")
+    public CursorResult<List<OrderDto>> ordersV3_cursor(@RequestParam(value = "cursor", required = false) String cursor,
+                                                        @RequestParam(value = "sort", defaultValue = "id") String sort,
+                                                        @RequestParam(value = "limit", defaultValue = "100") int limit){
+        OrderCursor orderCursor = cursor != null
+                ? decodeCursor(cursor)
+                : OrderCursor.first("orderDate".equals(sort) ? OrderCursor.Sort.ORDER_DATE : OrderCursor.Sort.ID);
+        int size = Math.max(1, Math.min(limit, MAX_CURSOR_LIMIT));
+
+        // 한 건 더 조회해서 다음 페이지 존재 여부 확인
+        List<Order> orders = orderRepository.findAllWithMemberDelivery(orderCursor, size + 1);
+        String nextCursor = null;
+        if (orders.size() > size) {
+            orders = orders.subList(0, size);
+            Order last = orders.get(size - 1);
+            nextCursor = OrderCursor.after(orderCursor.getSort(), last.getId(), last.getOrderDate()).encode();
+        }
+
+        List<OrderDto> collect = orders.stream()
+                .map(o -> new OrderDto(o))
+                .collect(toList());
+        return new CursorResult<>(collect, nextCursor);
+    }
+
+    // 클라이언트가 보낸 커서가 깨졌으면 서버 오류(500)가 아니라 잘못된 요청(400)
+    private static OrderCursor decodeCursor(String cursor) {
+        try {
+            return OrderCursor.decode(cursor);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage(), e);
+        }
+    }
+
     //-------------------------------------여기부터 DTO 직접 조회 방식-------------------------------------
 
     // JPA에서 DTO를 직접 조회
@@ -114,9 +169,11 @@ public class OrderApiController {
     // V4 의 N+1 문제 해결되기 때문에 성능이 좋음
     // 데이터 건수가 다수 일 때 유용함
     // 페이징 해야할 때
+    // 조회 결과는 직렬화해서 캐싱, 주문/회원/상품 이름이 바뀌면 커밋 후 무효화 (OrderDtoCache)
+    // 바뀐 것이 없으면 If-None-Match 에 304 응답 (CachedResponses)
     @GetMapping("/api/v5/orders")
-    public List<OrderQueryDto> ordersV5(){
-        return orderQueryRepository.findAllByDto_optimization();
+    public ResponseEntity<byte[]> ordersV5(HttpServletRequest request){
+        return cachedResponses.respond(request, OrderDtoCache.ORDERS, orderQueryRepository::findAllByDto_optimization);
     }
 
     // 플랫 데이터 최적화 - JOIN 결과를 그대로 조회 후 애플리케이션에서 원하는 모양으로 직접 변환
@@ -134,6 +191,34 @@ public class OrderApiController {
                 .collect(toList());
     }
 
+    // 플랫 데이터 스트리밍 - V6 는 플랫 결과 전체를 List 로 올리고 groupingBy(HashMap) 로 한 번 더 복사하면서 순서도 잃어버림
+    // order_id 순으로 커서를 읽으면서 주문 하나가 완성될 때마다 바로 응답에 씀
+    // 메모리에는 주문 한 건만 올라가고 결과 순서는 order_id 순으로 항상 같음
+    @GetMapping("/api/v6.1/orders")
+    public void ordersV6_stream(HttpServletResponse response) throws IOException {
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setCharacterEncoding("UTF-8");
+
+        try (JsonGenerator generator = objectMapper.createGenerator(response.getOutputStream())) {
+            generator.writeStartArray();
+            orderQueryRepository.streamAllByDto_flat(STREAM_FETCH_SIZE, dto -> {
+                try {
+                    generator.writeObject(dto);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            generator.writeEndArray();
+        }
+    }
+
+    @Data
+    @AllArgsConstructor
+    static class CursorResult<T>{
+        private T data;
+        private String nextCursor; // 마지막 페이지면 null
+    }
+
     @Data
     static class OrderDto{
 
@@ -0,0 +1,104 @@
+package jpabook.jpashop.api;
+
+import jpabook.jpashop.service.OrderResult;
+import jpabook.jpashop.service.OrderService;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.RequiredArgsConstructor;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RestController;
+
+import javax.validation.Valid;
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotEmpty;
+import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Size;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@RequiredArgsConstructor
+public class OrderCommandApiController {
+
+    private final OrderService orderService;
+
+    /**
+     * 장바구니 주문 - 같은 상품이 여러 번 들어오면 수량을 합침
+     */
+    @PostMapping("/api/v1/orders")
+    public CreateOrderResponse createOrder(@RequestBody @Valid CreateOrderRequest request) {
+        Map<Long, Integer> itemCounts = new LinkedHashMap<>();
+        for (OrderLine line : request.getItems()) {
+            itemCounts.merge(line.getItemId(), line.getCount(), Integer::sum);
+        }
+        return new CreateOrderResponse(orderService.order(request.getMemberId(), itemCounts));
+    }
+
+    /**
+     * 주문 일괄 취소 (운영 대량 취소용) - 취소하지 못한 주문은 사유와 함께 failed 에 담김
+     */
+    @PostMapping("/api/v1/orders/cancel")
+    public CancelOrdersResponse cancelOrders(@RequestBody @Valid CancelOrdersRequest request) {
+        List<OrderResult> results = orderService.cancelOrders(request.getOrderIds());
+
+        CancelOrdersResponse response = new CancelOrdersResponse();
+        for (int i = 0; i < results.size(); i++) {
+            OrderResult result = results.get(i);
+            if (result.isSuccess()) {
+                response.getCanceled().add(result.getOrderId());
+            } else {
+                response.getFailed().add(new CancelFailure(request.getOrderIds().get(i), result.getException().getMessage()));
+            }
+        }
+        return response;
+    }
+
+    @Data
+    static class CreateOrderRequest {
+        @NotNull
+        private Long memberId;
+        @NotEmpty
+        @Valid
+        private List<OrderLine> items = new ArrayList<>();
+    }
+
+    @Data
+    @AllArgsConstructor
+    @NoArgsConstructor
+    static class OrderLine {
+        @NotNull
+        private Long itemId;
+        @Min(1)
+        private int count;
+    }
+
+    @Data
+    @AllArgsConstructor
+    static class CreateOrderResponse {
+        private Long id;
+    }
+
+    @Data
+    static class CancelOrdersRequest {
+        @NotEmpty
+        @Size(max = 10000)
+        private List<@NotNull Long> orderIds = new ArrayList<>();
+    }
+
+    @Data
+    static class CancelOrdersResponse {
+        private List<Long> canceled = new ArrayList<>();
+        private List<CancelFailure> failed = new ArrayList<>();
+    }
+
+    @Data
+    @AllArgsConstructor
+    static class CancelFailure {
+        private Long orderId;
+        private String reason;
+    }
+}
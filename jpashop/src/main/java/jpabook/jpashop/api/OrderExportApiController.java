@@ -0,0 +1,131 @@
+package jpabook.jpashop.api;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import jpabook.jpashop.domain.Address;
+import jpabook.jpashop.repository.order.query.OrderItemQueryDto;
+import jpabook.jpashop.repository.order.query.OrderQueryDto;
+import jpabook.jpashop.service.OrderExportService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import javax.servlet.http.HttpServletResponse;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 전체 주문 내보내기 (외부 시스템 연동용)
+ *
+ * /api/v3/orders 는 전체 주문을 컬렉션 페치 조인으로 한 번에 List 에 올림
+ * 여기서는 커서로 읽으면서 주문 하나가 완성될 때마다 응답에 바로 쓰기 때문에
+ * 주문 수와 상관없이 메모리 사용량이 일정하고 첫 주문부터 바로 전송됨
+ * - format=ndjson : 한 줄에 주문 하나 (주문상품 포함)
+ * - format=csv    : 한 줄에 주문상품 하나 (주문상품이 없는 주문은 상품 칸이 빈 한 줄)
+ */
+@RestController
+@RequiredArgsConstructor
+public class OrderExportApiController {
+
+    private static final String NDJSON = "application/x-ndjson";
+
+    private final OrderExportService orderExportService;
+    private final ObjectMapper objectMapper;
+
+    // 이 건수마다 응답을 내보냄 (첫 주문은 바로)
+    @Value("${jpashop.export.flush-interval:1000}")
+    private int flushInterval = 1000;
+
+    @GetMapping("/api/export/orders")
+    public void exportOrders(@RequestParam(value = "format", defaultValue = "ndjson") String format,
+                             HttpServletResponse response) throws IOException {
+        if ("ndjson".equals(format)) {
+            exportNdjson(response);
+        } else if ("csv".equals(format)) {
+            exportCsv(response);
+        } else {
+            throw new IllegalArgumentException("지원하지 않는 형식입니다. " + format);
+        }
+    }
+
+    private void exportNdjson(HttpServletResponse response) throws IOException {
+        response.setContentType(NDJSON);
+        response.setCharacterEncoding("UTF-8");
+
+        try (SequenceWriter writer = objectMapper.writer()
+                .withRootValueSeparator("\n")
+                .writeValues(response.getOutputStream())) {
+            int[] count = new int[1];
+            orderExportService.exportOrders(order -> {
+                try {
+                    writer.write(order);
+                    if (shouldFlush(++count[0])) {
+                        writer.flush();
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        }
+    }
+
+    private void exportCsv(HttpServletResponse response) throws IOException {
+        response.setContentType("text/csv");
+        response.setCharacterEncoding("UTF-8");
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"orders.csv\"");
+
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(response.getOutputStream(), StandardCharsets.UTF_8))) {
+            writer.write("order_id,member_name,order_date,order_status,city,street,zipcode,item_name,order_price,count\n");
+            int[] count = new int[1];
+            orderExportService.exportOrders(order -> {
+                try {
+                    writeCsv(writer, order);
+                    if (shouldFlush(++count[0])) {
+                        writer.flush();
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        }
+    }
+
+    private boolean shouldFlush(int count) {
+        return count == 1 || count % flushInterval == 0;
+    }
+
+    private static void writeCsv(Writer writer, OrderQueryDto order) throws IOException {
+        Address address = order.getAddress();
+        String prefix = order.getOrderId() + "," + csv(order.getName()) + "," + order.getOrderDate() + "," + order.getOrderStatus() + ","
+                + csv(address != null ? address.getCity() : null) + ","
+                + csv(address != null ? address.getStreet() : null) + ","
+                + csv(address != null ? address.getZipcode() : null) + ",";
+        if (order.getOrderItems().isEmpty()) {
+            writer.write(prefix + ",,\n");
+            return;
+        }
+        for (OrderItemQueryDto item : order.getOrderItems()) {
+            writer.write(prefix);
+            writer.write(csv(item.getItemName()));
+            writer.write("," + item.getOrderPrice() + "," + item.getCount() + "\n");
+        }
+    }
+
+    // 쉼표, 따옴표, 줄바꿈이 있으면 따옴표로 감싸고 따옴표는 두 번 씀 (RFC 4180)
+    private static String csv(String value) {
+        if (value == null) {
+            return "";
+        }
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return "\"" + value.replace("\"", "\"\"") + "\"";
+    }
+}
@@ -1,17 +1,22 @@
 package jpabook.jpashop.api;
 
+import jpabook.jpashop.cache.CachedResponses;
+import jpabook.jpashop.cache.OrderDtoCache;
 import jpabook.jpashop.domain.Address;
 import jpabook.jpashop.domain.Order;
 import jpabook.jpashop.domain.OrderStatus;
 import jpabook.jpashop.repository.OrderRepository;
 import jpabook.jpashop.repository.OrderSearch;
+import jpabook.jpashop.repository.order.simplequery.OrderSimpleJdbcRepository;
 import jpabook.jpashop.repository.order.simplequery.OrderSimpleQueryDto;
 import jpabook.jpashop.repository.order.simplequery.OrderSimpleQueryRepository;
 import lombok.Data;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RestController;
 
+import javax.servlet.http.HttpServletRequest;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.stream.Collectors;
@@ -27,6 +32,8 @@ import java.util.stream.Collectors;
 public class OrderSimpleApiController {
     private final OrderRepository orderRepository;
     private final OrderSimpleQueryRepository orderSimpleQueryRepository;
+    private final OrderSimpleJdbcRepository orderSimpleJdbcRepository;
+    private final CachedResponses cachedResponses;
 
     @GetMapping("/api/v1/simple-orders")
     public List<Order> orderV1(){
@@ -53,9 +60,17 @@ public class OrderSimpleApiController {
         return collect;
     }
 
+    // DTO 조회 결과를 직렬화해서 캐싱, 주문/회원이 바뀌면 커밋 후 무효화 (OrderDtoCache)
+    // 바뀐 것이 없으면 If-None-Match 에 304 응답 (CachedResponses)
     @GetMapping("/api/v4/simple-orders")
-    public List<OrderSimpleQueryDto> orderV4(){
-        return orderSimpleQueryRepository.findOrderDtos();
+    public ResponseEntity<byte[]> orderV4(HttpServletRequest request){
+        return cachedResponses.respond(request, OrderDtoCache.SIMPLE_ORDERS, orderSimpleQueryRepository::findOrderDtos);
+    }
+
+    // JdbcTemplate 으로 ResultSet 에서 바로 DTO 생성 (엔티티, JPQL, 영속성 컨텍스트 없음)
+    @GetMapping("/api/v5/simple-orders")
+    public List<OrderSimpleQueryDto> orderV5(){
+        return orderSimpleJdbcRepository.findOrderDtos();
     }
 
     @Data
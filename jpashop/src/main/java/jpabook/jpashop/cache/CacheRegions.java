@@ -0,0 +1,21 @@
+package jpabook.jpashop.cache;
+
+import java.util.List;
+
+/**
+ * 2차 캐시 영역 이름
+ * 엔티티/컬렉션의 @Cache(region = ...) 와 jpashop.cache.regions.<이름> 설정에서 같이 사용
+ */
+public final class CacheRegions {
+
+    public static final String ITEM = "item";
+    public static final String MEMBER = "member";
+    public static final String CATEGORY = "category";
+    public static final String CATEGORY_ITEMS = "category.items";
+    public static final String CATEGORY_CHILD = "category.child";
+
+    public static final List<String> ALL = List.of(ITEM, MEMBER, CATEGORY, CATEGORY_ITEMS, CATEGORY_CHILD);
+
+    private CacheRegions() {
+    }
+}
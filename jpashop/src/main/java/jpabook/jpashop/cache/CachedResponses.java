@@ -0,0 +1,84 @@
+package jpabook.jpashop.cache;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+
+import javax.servlet.http.HttpServletRequest;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * DtoCache 의 직렬화된 본문으로 조회 API 응답 생성
+ *
+ * - 캐시가 유효하면 DB 조회도 Jackson 직렬화도 하지 않고 저장된 byte[] 를 그대로 응답
+ * - If-None-Match 가 현재 ETag 와 같으면 본문 없이 304 (폴링 클라이언트는 변경이 있을 때만 본문을 받음)
+ * - Accept-Encoding: gzip 이고 gzip-min-size 이상이면 미리 압축해둔 본문 응답 (표현이 다르므로 ETag 도 구분)
+ *
+ * ETag 는 인스턴스의 무효화 세대로 만들기 때문에 여러 인스턴스 뒤에서는 인스턴스마다 ETag 가 다를 수 있음
+ */
+@Component
+@RequiredArgsConstructor
+public class CachedResponses {
+
+    private static final String GZIP_SUFFIX = "-gz";
+
+    private final DtoCache dtoCache;
+
+    @Value("${jpashop.response-cache.gzip-min-size:1024}")
+    private int gzipMinSize = 1024;
+
+    public ResponseEntity<byte[]> respond(HttpServletRequest request, String name, Supplier<?> loader) {
+        DtoCache.CachedBody cached = dtoCache.lookup(name, loader);
+        boolean gzip = acceptsGzip(request) && cached.getBody().length >= gzipMinSize;
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.setCacheControl(CacheControl.noCache());
+        headers.setVary(List.of(HttpHeaders.ACCEPT_ENCODING));
+        if (cached.getEtag() != null) {
+            String etag = gzip ? gzipEtag(cached.getEtag()) : cached.getEtag();
+            headers.setETag(etag);
+            if (matches(request.getHeader(HttpHeaders.IF_NONE_MATCH), etag)) {
+                return new ResponseEntity<>(headers, HttpStatus.NOT_MODIFIED);
+            }
+        }
+
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        if (gzip) {
+            headers.set(HttpHeaders.CONTENT_ENCODING, "gzip");
+            return new ResponseEntity<>(cached.getGzipBody(), headers, HttpStatus.OK);
+        }
+        return new ResponseEntity<>(cached.getBody(), headers, HttpStatus.OK);
+    }
+
+    private static boolean acceptsGzip(HttpServletRequest request) {
+        String acceptEncoding = request.getHeader(HttpHeaders.ACCEPT_ENCODING);
+        return acceptEncoding != null && acceptEncoding.toLowerCase().contains("gzip");
+    }
+
+    // "a"-gz 가 아니라 "a-gz" 형태
+    private static String gzipEtag(String etag) {
+        return etag.substring(0, etag.length() - 1) + GZIP_SUFFIX + "\"";
+    }
+
+    private static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String value = candidate.trim();
+            if (value.startsWith("W/")) {
+                value = value.substring(2);
+            }
+            if (value.equals("*") || value.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,262 @@
+package jpabook.jpashop.cache;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jpabook.jpashop.datasource.ReadYourWrites;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 조회 DTO 캐시
+ *
+ * 엔티티는 영속성 컨텍스트가 관리하기 때문에 캐시하면 안되고, 엔티티 - DTO 변환 - 캐싱
+ * DTO 를 JSON 으로 직렬화한 byte[] 를 보관해서 꺼내 쓰는 쪽이 바꿔도 캐시에 영향이 없고 응답에 그대로 씀
+ *
+ * - invalidate 하면 세대(generation)만 올리고, 조회 시 세대가 다르면 다시 로딩
+ *   로딩 중에 invalidate 되면 로딩 결과는 이미 오래된 값으로 취급
+ * - 같은 세대의 로딩은 한 번만 실행하고 동시에 조회한 요청은 그 결과를 기다림
+ *   (무효화 직후 요청이 몰려도 loader 쿼리가 요청 수만큼 실행되지 않음)
+ * - stale-while-revalidate=true 면 무효화된 값을 바로 반환하고 백그라운드에서 한 번만 다시 로딩
+ *   (대시보드처럼 조회가 많고 약간 늦어도 되는 화면용)
+ * - 쓰기 트랜잭션 안에서는 커밋 전 데이터가 캐시에 들어갈 수 있어서 캐시를 사용하지 않음
+ * - 캐시된 값마다 (시작 시각, 이름, 세대) 로 만든 ETag 를 붙여서 본문을 보지 않고도 변경 여부를 알 수 있음 (CachedResponses)
+ * - 로딩은 항상 새 읽기 전용 트랜잭션에서 주 DB 로 읽음
+ *   무효화 직후 복제본(최대 max-lag 늦음)에서 읽으면 이전 데이터가 새 세대/ETag 로 저장되어 다음 무효화까지 남음
+ */
+@Slf4j
+@Component
+public class DtoCache {
+
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate readOnlyTransaction;
+    private final boolean staleWhileRevalidate;
+    private final ExecutorService refresher;
+    // 재시작하면 세대가 0 부터 다시 시작하므로 이전 프로세스의 ETag 와 겹치지 않게 구분
+    private final String epoch = Long.toString(System.currentTimeMillis(), 36);
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    public DtoCache(ObjectMapper objectMapper,
+                    PlatformTransactionManager transactionManager,
+                    @Value("${jpashop.dto-cache.stale-while-revalidate:false}") boolean staleWhileRevalidate) {
+        this.objectMapper = objectMapper;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        // 바깥 읽기 전용 트랜잭션이 이미 복제본 커넥션을 잡았을 수 있으므로 새 트랜잭션
+        this.readOnlyTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.staleWhileRevalidate = staleWhileRevalidate;
+        this.refresher = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "dto-cache-refresh");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * name 의 직렬화된 DTO, 없거나 무효화됐으면 loader 로 다시 만듦
+     */
+    public byte[] get(String name, Supplier<?> loader) {
+        return lookup(name, loader).getBody();
+    }
+
+    /**
+     * get 과 같지만 ETag 와 gzip 본문을 같이 반환
+     * 캐시를 사용할 수 없으면 (쓰기 트랜잭션) ETag 는 null
+     */
+    public CachedBody lookup(String name, Supplier<?> loader) {
+        if (!cacheable()) {
+            return new CachedBody(serialize(loader.get()), -1, null);
+        }
+
+        Entry entry = entries.computeIfAbsent(name, n -> new Entry());
+        CachedBody snapshot = entry.snapshot;
+        if (snapshot != null && snapshot.generation == entry.generation.get()) {
+            return snapshot;
+        }
+        if (snapshot != null && staleWhileRevalidate) {
+            refreshAsync(name, entry, loader);
+            return snapshot;
+        }
+        return loadOnce(name, entry, loader);
+    }
+
+    public void invalidate(String name) {
+        Entry entry = entries.get(name);
+        if (entry != null) {
+            entry.generation.incrementAndGet();
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        refresher.shutdownNow();
+    }
+
+    // 세대마다 한 스레드만 로딩하고 나머지는 같은 결과(또는 예외)를 기다림
+    private CachedBody loadOnce(String name, Entry entry, Supplier<?> loader) {
+        while (true) {
+            long generation = entry.generation.get();
+            CachedBody snapshot = entry.snapshot;
+            if (snapshot != null && snapshot.generation == generation) {
+                return snapshot;
+            }
+            Loading current = entry.loading.get();
+            if (current != null && current.generation == generation) {
+                return current.await();
+            }
+            Loading mine = new Loading(generation);
+            if (!entry.loading.compareAndSet(current, mine)) {
+                continue;
+            }
+            try {
+                CachedBody loaded = load(name, entry, loader, generation);
+                mine.result.complete(loaded);
+                return loaded;
+            } catch (RuntimeException | Error e) {
+                mine.result.completeExceptionally(e);
+                throw e;
+            } finally {
+                entry.loading.compareAndSet(mine, null);
+            }
+        }
+    }
+
+    private CachedBody load(String name, Entry entry, Supplier<?> loader, long generation) {
+        byte[] body;
+        try (ReadYourWrites.Scope primary = ReadYourWrites.requirePrimary()) {
+            body = readOnlyTransaction.execute(status -> serialize(loader.get()));
+        }
+        CachedBody loaded = new CachedBody(body, generation, "\"" + epoch + "-" + name + "-" + generation + "\"");
+        entry.store(loaded);
+        return loaded;
+    }
+
+    private void refreshAsync(String name, Entry entry, Supplier<?> loader) {
+        if (!entry.refreshing.compareAndSet(false, true)) {
+            return;
+        }
+        refresher.execute(() -> {
+            try {
+                loadOnce(name, entry, loader);
+            } catch (RuntimeException e) {
+                log.warn("DTO 캐시 갱신 실패 name={}", name, e);
+            } finally {
+                entry.refreshing.set(false);
+            }
+        });
+    }
+
+    private static boolean cacheable() {
+        return !TransactionSynchronizationManager.isActualTransactionActive()
+                || TransactionSynchronizationManager.isCurrentTransactionReadOnly();
+    }
+
+    private byte[] serialize(Object value) {
+        try {
+            return objectMapper.writeValueAsBytes(value);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static class Entry {
+        private final AtomicLong generation = new AtomicLong();
+        private final AtomicBoolean refreshing = new AtomicBoolean();
+        private final AtomicReference<Loading> loading = new AtomicReference<>();
+        private volatile CachedBody snapshot;
+
+        // 늦게 끝난 이전 세대 로딩이 최신 값을 덮어쓰지 않도록 함
+        private synchronized void store(CachedBody loaded) {
+            if (snapshot == null || snapshot.generation <= loaded.generation) {
+                snapshot = loaded;
+            }
+        }
+    }
+
+    // 진행 중인 로딩 (어느 세대를 읽는 중인지와 그 결과)
+    private static class Loading {
+        private final long generation;
+        private final CompletableFuture<CachedBody> result = new CompletableFuture<>();
+
+        private Loading(long generation) {
+            this.generation = generation;
+        }
+
+        private CachedBody await() {
+            try {
+                return result.join();
+            } catch (CompletionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                if (cause instanceof Error) {
+                    throw (Error) cause;
+                }
+                throw new IllegalStateException(cause);
+            }
+        }
+    }
+
+    public static class CachedBody {
+        private final byte[] body;
+        private final long generation;
+        private final String etag;
+        private volatile byte[] gzipBody;
+
+        private CachedBody(byte[] body, long generation, String etag) {
+            this.body = body;
+            this.generation = generation;
+            this.etag = etag;
+        }
+
+        public byte[] getBody() {
+            return body;
+        }
+
+        public String getEtag() {
+            return etag;
+        }
+
+        // 처음 요청될 때 한 번만 압축 (동시에 압축해도 결과가 같아서 락 없음)
+        public byte[] getGzipBody() {
+            byte[] gzipped = gzipBody;
+            if (gzipped == null) {
+                gzipped = gzip(body);
+                gzipBody = gzipped;
+            }
+            return gzipped;
+        }
+
+        private static byte[] gzip(byte[] body) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream(body.length / 4 + 64);
+            try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+                gzip.write(body);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return out.toByteArray();
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package jpabook.jpashop.cache;
+
+import jpabook.jpashop.domain.event.MemberChangedEvent;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+/**
+ * 회원 목록 응답 캐시 (/api/v2/members)
+ * 가입/이름 변경이 커밋되면 무효화
+ */
+@Component
+@RequiredArgsConstructor
+public class MemberDtoCache {
+
+    public static final String MEMBERS = "members";
+
+    private final DtoCache dtoCache;
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onMemberChanged(MemberChangedEvent event) {
+        dtoCache.invalidate(MEMBERS);
+    }
+}
@@ -0,0 +1,48 @@
+package jpabook.jpashop.cache;
+
+import jpabook.jpashop.domain.event.ItemChangedEvent;
+import jpabook.jpashop.domain.event.MemberChangedEvent;
+import jpabook.jpashop.domain.event.OrderChangedEvent;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+/**
+ * 주문 조회 DTO 캐시 (/api/v4/simple-orders, /api/v5/orders)
+ *
+ * 커밋된 변경 이벤트만 보고 해당 DTO 에 실제로 들어가는 값이 바뀐 경우에만 무효화
+ * - 주문 생성/취소 : 둘 다
+ * - 회원 이름 변경 : 둘 다 (name), 가입은 주문이 없으므로 무시
+ * - 상품 이름 변경 : 주문 상품이 들어있는 v5 만 (가격/재고는 주문 DTO 에 없음)
+ */
+@Component
+@RequiredArgsConstructor
+public class OrderDtoCache {
+
+    public static final String SIMPLE_ORDERS = "simple-orders";
+    public static final String ORDERS = "orders";
+
+    private final DtoCache dtoCache;
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onOrderChanged(OrderChangedEvent event) {
+        dtoCache.invalidate(SIMPLE_ORDERS);
+        dtoCache.invalidate(ORDERS);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onMemberChanged(MemberChangedEvent event) {
+        if (event.isJoined()) {
+            return;
+        }
+        dtoCache.invalidate(SIMPLE_ORDERS);
+        dtoCache.invalidate(ORDERS);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onItemChanged(ItemChangedEvent event) {
+        if (event.isNameChanged()) {
+            dtoCache.invalidate(ORDERS);
+        }
+    }
+}
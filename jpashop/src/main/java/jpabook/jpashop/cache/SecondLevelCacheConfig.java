@@ -0,0 +1,61 @@
+package jpabook.jpashop.cache;
+
+import com.github.benmanes.caffeine.jcache.configuration.CaffeineConfiguration;
+import com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.JCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.cache.jcache.ConfigSettings;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import javax.cache.spi.CachingProvider;
+import java.net.URI;
+import java.util.OptionalLong;
+
+/**
+ * 하이버네이트 2차 캐시 (JCache + Caffeine)
+ *
+ * 영역마다 크기/TTL 을 jpashop.cache 설정으로 만든 CacheManager 를 하이버네이트에 넘김
+ * 영역별 히트/미스는 JCache 통계를 직접 메트릭으로 등록해서 cache.gets{cache=<영역>, result=hit|miss} 로 확인
+ * (hibernate-micrometer 의 영역별 메트릭은 하이버네이트 통계가 켜진 dev, jmh 프로필에서만 나옴)
+ */
+@Slf4j
+@Configuration
+@EnableConfigurationProperties(SecondLevelCacheProperties.class)
+public class SecondLevelCacheConfig {
+
+    @Bean
+    public CacheManager hibernateCacheManager(SecondLevelCacheProperties properties) {
+        CachingProvider provider = Caching.getCachingProvider(CaffeineCachingProvider.class.getName());
+        // 다른 곳에서 쓰는 기본 CacheManager 와 겹치지 않도록 전용 URI 사용
+        CacheManager cacheManager = provider.getCacheManager(URI.create("jpashop-hibernate"), getClass().getClassLoader());
+
+        for (String name : CacheRegions.ALL) {
+            SecondLevelCacheProperties.Region region = properties.regionOf(name);
+            CaffeineConfiguration<Object, Object> configuration = new CaffeineConfiguration<>();
+            configuration.setMaximumSize(OptionalLong.of(region.getMaxSize()));
+            configuration.setExpireAfterWrite(OptionalLong.of(region.getTtl().toNanos()));
+            configuration.setStatisticsEnabled(true);
+            if (cacheManager.getCache(name) == null) {
+                cacheManager.createCache(name, configuration);
+            }
+            log.info("2차 캐시 영역 region={} maxSize={} ttl={}", name, region.getMaxSize(), region.getTtl());
+        }
+        return cacheManager;
+    }
+
+    @Bean
+    public MeterBinder secondLevelCacheMetrics(CacheManager hibernateCacheManager) {
+        return registry -> CacheRegions.ALL.forEach(name -> JCacheMetrics.monitor(registry, hibernateCacheManager.getCache(name)));
+    }
+
+    @Bean
+    public HibernatePropertiesCustomizer secondLevelCacheCustomizer(CacheManager hibernateCacheManager) {
+        return properties -> properties.put(ConfigSettings.CACHE_MANAGER, hibernateCacheManager);
+    }
+}
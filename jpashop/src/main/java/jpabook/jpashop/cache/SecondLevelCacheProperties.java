@@ -0,0 +1,38 @@
+package jpabook.jpashop.cache;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 2차 캐시 영역별 크기/TTL
+ * regions 에 없는 영역은 defaults 사용
+ */
+@Getter @Setter
+@ConfigurationProperties(prefix = "jpashop.cache")
+public class SecondLevelCacheProperties {
+
+    private Region defaults = new Region();
+    private Map<String, Region> regions = new HashMap<>();
+
+    public Region regionOf(String name) {
+        Region region = regions.get(name);
+        if (region == null) {
+            return defaults;
+        }
+        Region merged = new Region();
+        merged.setMaxSize(region.getMaxSize() != null ? region.getMaxSize() : defaults.getMaxSize());
+        merged.setTtl(region.getTtl() != null ? region.getTtl() : defaults.getTtl());
+        return merged;
+    }
+
+    @Getter @Setter
+    public static class Region {
+        private Long maxSize = 10_000L;
+        private Duration ttl = Duration.ofMinutes(10);
+    }
+}
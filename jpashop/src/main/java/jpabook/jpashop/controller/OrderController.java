@@ -6,6 +6,7 @@ import jpabook.jpashop.domain.item.Item;
 import jpabook.jpashop.repository.OrderSearch;
 import jpabook.jpashop.service.ItemService;
 import jpabook.jpashop.service.MemberService;
+import jpabook.jpashop.service.OrderPipeline;
 import jpabook.jpashop.service.OrderService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Controller;
@@ -19,6 +20,7 @@ import java.util.List;
 public class OrderController {
 
     private final OrderService orderService;
+    private final OrderPipeline orderPipeline;
     private final MemberService memberService;
     private final ItemService itemService;
 
@@ -35,7 +37,7 @@ public class OrderController {
     public String order(@RequestParam("memberId") Long memberId,
                         @RequestParam("itemId") Long itemId,
                         @RequestParam("count") int count){
-        orderService.order(memberId, itemId, count);
+        orderPipeline.order(memberId, itemId, count);
         return "redirect:/orders";
     }
 
@@ -0,0 +1,343 @@
+package jpabook.jpashop.datagen;
+
+import jpabook.jpashop.domain.PooledSequenceGenerator;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.StatelessSession;
+import org.hibernate.Transaction;
+import org.hibernate.dialect.Dialect;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.persistence.EntityManagerFactory;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 부하 테스트용 대량 데이터 생성 (jpashop.datagen.enabled=true, datagen 프로파일)
+ *
+ * 회원, 상품(Book/Album/Movie), 카테고리, 주문(배송, 주문상품)을 설정한 건수만큼 생성
+ * - 엔티티를 persist 하면 영속성 컨텍스트에 쌓이기 때문에 StatelessSession 에서 JDBC batch insert
+ * - 건수를 writer 스레드 수로 나눠서 스레드마다 자기 StatelessSession(커넥션)으로 동시에 적재
+ *   batch-size 건마다 커밋
+ * - id 는 엔티티와 같은 시퀀스에서 할당 크기(PooledSequenceGenerator)만큼 한 번에 받아서 사용
+ *   (애플리케이션이 나중에 만드는 id 와 겹치지 않음)
+ * - 주문하는 회원과 주문되는 상품은 skew 만큼 앞쪽(인기 회원/상품)으로 몰리게 분포
+ *   skew=1 이면 균등, 클수록 소수에 집중
+ * - 단계별 적재 건수와 초당 건수(rows/sec)를 로그로 남김
+ *
+ * 설정하지 않으면 빈이 만들어지지 않아서 일반 실행에는 영향 없음
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "jpashop.datagen.enabled", havingValue = "true")
+public class BulkDataGenerator implements ApplicationRunner {
+
+    private static final String[] CITIES = {"서울", "부산", "대구", "인천", "광주", "대전", "울산"};
+    private static final int ROOT_CATEGORIES = 10;
+
+    private final SessionFactoryImplementor sessionFactory;
+    private final Dialect dialect;
+    private final int members;
+    private final int items;
+    private final int categories;
+    private final int orders;
+    private final int maxItemsPerOrder;
+    private final int threads;
+    private final int batchSize;
+    private final double skew;
+
+    public BulkDataGenerator(EntityManagerFactory entityManagerFactory,
+                             @Value("${jpashop.datagen.members:100000}") int members,
+                             @Value("${jpashop.datagen.items:10000}") int items,
+                             @Value("${jpashop.datagen.categories:100}") int categories,
+                             @Value("${jpashop.datagen.orders:1000000}") int orders,
+                             @Value("${jpashop.datagen.max-items-per-order:3}") int maxItemsPerOrder,
+                             @Value("${jpashop.datagen.threads:4}") int threads,
+                             @Value("${jpashop.datagen.batch-size:1000}") int batchSize,
+                             @Value("${jpashop.datagen.skew:2.0}") double skew) {
+        this.sessionFactory = entityManagerFactory.unwrap(SessionFactoryImplementor.class);
+        this.dialect = sessionFactory.getJdbcServices().getDialect();
+        this.members = members;
+        this.items = items;
+        this.categories = Math.max(1, categories);
+        this.orders = orders;
+        this.maxItemsPerOrder = Math.max(1, maxItemsPerOrder);
+        this.threads = Math.max(1, threads);
+        this.batchSize = Math.max(1, batchSize);
+        this.skew = Math.max(1.0, skew);
+    }
+
+    @Override
+    public void run(ApplicationArguments args) throws Exception {
+        log.info("대량 데이터 생성 시작 members={} items={} categories={} orders={} threads={} batchSize={}",
+                members, items, categories, orders, threads, batchSize);
+        long start = System.nanoTime();
+
+        AtomicInteger threadNumber = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(threads, r -> new Thread(r, "datagen-" + threadNumber.incrementAndGet()));
+        try {
+            long[] categoryIds = new long[categories];
+            long[] memberIds = new long[members];
+            long[] itemIds = new long[items];
+            int[] itemPrices = new int[items];
+
+            long rows = 0;
+            // 부모 카테고리를 먼저 넣어야 해서 한 스레드로 적재
+            rows += phase("category", categories, 1, executor,
+                    (connection, ids, from, to) -> insertCategories(connection, ids, categoryIds, from, to));
+            rows += phase("member", members, threads, executor,
+                    (connection, ids, from, to) -> insertMembers(connection, ids, memberIds, from, to));
+            rows += phase("item", items, threads, executor,
+                    (connection, ids, from, to) -> insertItems(connection, ids, categoryIds, itemIds, itemPrices, from, to));
+            // 주문할 회원이나 상품이 없으면 주문은 만들지 않음
+            int orderCount = members > 0 && items > 0 ? orders : 0;
+            rows += phase("order", orderCount, threads, executor,
+                    (connection, ids, from, to) -> insertOrders(connection, ids, memberIds, itemIds, itemPrices, from, to));
+
+            report("전체", rows, start);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    // [0, count) 를 스레드 수만큼 나눠서 동시에 적재, 적재한 row 수 반환
+    private long phase(String name, int count, int parallelism, ExecutorService executor, ChunkWriter writer)
+            throws InterruptedException, ExecutionException {
+        if (count <= 0) {
+            return 0;
+        }
+        long start = System.nanoTime();
+        int slice = (count + parallelism - 1) / parallelism;
+        List<Future<Long>> futures = new ArrayList<>(parallelism);
+        for (int from = 0; from < count; from += slice) {
+            int begin = from;
+            int end = Math.min(from + slice, count);
+            futures.add(executor.submit(() -> write(writer, begin, end)));
+        }
+
+        long rows = 0;
+        for (Future<Long> future : futures) {
+            rows += future.get();
+        }
+        report(name, rows, start);
+        return rows;
+    }
+
+    private long write(ChunkWriter writer, int from, int to) {
+        IdAllocator ids = new IdAllocator();
+        long[] rows = new long[1];
+        try (StatelessSession session = sessionFactory.openStatelessSession()) {
+            for (int begin = from; begin < to; begin += batchSize) {
+                int end = Math.min(begin + batchSize, to);
+                int chunkFrom = begin;
+                Transaction tx = session.beginTransaction();
+                try {
+                    session.doWork(connection -> rows[0] += writer.write(connection, ids, chunkFrom, end));
+                    tx.commit();
+                } catch (RuntimeException e) {
+                    tx.rollback();
+                    throw e;
+                }
+            }
+        }
+        return rows[0];
+    }
+
+    private long insertCategories(Connection connection, IdAllocator ids, long[] categoryIds, int from, int to) throws SQLException {
+        try (PreparedStatement category = connection.prepareStatement(
+                "insert into category (category_id, name, parent_id) values (?, ?, ?)")) {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            for (int i = from; i < to; i++) {
+                categoryIds[i] = ids.next(connection, "category_seq");
+                category.setLong(1, categoryIds[i]);
+                category.setString(2, "category" + i);
+                if (i < ROOT_CATEGORIES) {
+                    category.setNull(3, Types.BIGINT);
+                } else {
+                    category.setLong(3, categoryIds[random.nextInt(Math.min(i, ROOT_CATEGORIES))]);
+                }
+                category.addBatch();
+            }
+            category.executeBatch();
+        }
+        return to - from;
+    }
+
+    private long insertMembers(Connection connection, IdAllocator ids, long[] memberIds, int from, int to) throws SQLException {
+        try (PreparedStatement member = connection.prepareStatement(
+                "insert into member (member_id, name, city, street, zipcode) values (?, ?, ?, ?, ?)")) {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            for (int i = from; i < to; i++) {
+                memberIds[i] = ids.next(connection, "member_seq");
+                member.setLong(1, memberIds[i]);
+                // member.name 은 유니크 (uk_member_name)
+                member.setString(2, "member" + memberIds[i]);
+                member.setString(3, CITIES[random.nextInt(CITIES.length)]);
+                member.setString(4, "street" + random.nextInt(1000));
+                member.setString(5, String.format("%05d", random.nextInt(100000)));
+                member.addBatch();
+            }
+            member.executeBatch();
+        }
+        return to - from;
+    }
+
+    // 상품 종류는 Book 60%, Album 25%, Movie 15%, 상품마다 카테고리 하나
+    private long insertItems(Connection connection, IdAllocator ids, long[] categoryIds, long[] itemIds, int[] itemPrices,
+                             int from, int to) throws SQLException {
+        try (PreparedStatement item = connection.prepareStatement(
+                "insert into item (dtype, item_id, name, price, stock_quantity, author, isbn, artist, etc, director, actor, version)" +
+                        " values (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, 0)");
+             PreparedStatement categoryItem = connection.prepareStatement(
+                     "insert into category_item (category_id, item_id) values (?, ?)");
+             PreparedStatement stockMovement = connection.prepareStatement(
+                     "insert into stock_movement (item_id, delta, reason, created_at) values (?, ?, 'INIT', ?)")) {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+            for (int i = from; i < to; i++) {
+                itemIds[i] = ids.next(connection, "item_seq");
+                itemPrices[i] = (random.nextInt(100) + 1) * 1000;
+                int type = random.nextInt(100);
+                String dtype = type < 60 ? "B" : type < 85 ? "A" : "M";
+
+                item.setString(1, dtype);
+                item.setLong(2, itemIds[i]);
+                item.setString(3, dtype + "-item" + i);
+                item.setInt(4, itemPrices[i]);
+                item.setInt(5, 1_000_000);
+                item.setString(6, "B".equals(dtype) ? "author" + random.nextInt(10000) : null);
+                item.setString(7, "B".equals(dtype) ? "isbn" + itemIds[i] : null);
+                item.setString(8, "A".equals(dtype) ? "artist" + random.nextInt(10000) : null);
+                item.setString(9, "A".equals(dtype) ? "etc" : null);
+                item.setString(10, "M".equals(dtype) ? "director" + random.nextInt(10000) : null);
+                item.setString(11, "M".equals(dtype) ? "actor" + random.nextInt(10000) : null);
+                item.addBatch();
+
+                categoryItem.setLong(1, categoryIds[skewed(random, categoryIds.length)]);
+                categoryItem.setLong(2, itemIds[i]);
+                categoryItem.addBatch();
+
+                // 재고 원장 초기값 (생성한 주문은 재고를 빼지 않으므로 원장도 초기값만)
+                stockMovement.setLong(1, itemIds[i]);
+                stockMovement.setInt(2, 1_000_000);
+                stockMovement.setTimestamp(3, now);
+                stockMovement.addBatch();
+            }
+            item.executeBatch();
+            categoryItem.executeBatch();
+            stockMovement.executeBatch();
+        }
+        return (to - from) * 3L;
+    }
+
+    // 주문 10건 중 1건은 취소, 주문일은 최근 1년 안에서 무작위
+    private long insertOrders(Connection connection, IdAllocator ids, long[] memberIds, long[] itemIds, int[] itemPrices,
+                              int from, int to) throws SQLException {
+        long rows = 0;
+        try (PreparedStatement delivery = connection.prepareStatement(
+                "insert into delivery (delivery_id, city, street, zipcode, status) values (?, ?, ?, ?, ?)");
+             PreparedStatement order = connection.prepareStatement(
+                     "insert into orders (order_id, member_id, delivery_id, order_date, status, version) values (?, ?, ?, ?, ?, 0)");
+             PreparedStatement orderItem = connection.prepareStatement(
+                     "insert into order_item (order_item_id, order_id, item_id, order_price, count) values (?, ?, ?, ?, ?)")) {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            LocalDateTime now = LocalDateTime.now();
+            for (int i = from; i < to; i++) {
+                long deliveryId = ids.next(connection, "delivery_seq");
+                long orderId = ids.next(connection, "orders_seq");
+                boolean canceled = random.nextInt(10) == 0;
+
+                delivery.setLong(1, deliveryId);
+                delivery.setString(2, CITIES[random.nextInt(CITIES.length)]);
+                delivery.setString(3, "street" + random.nextInt(1000));
+                delivery.setString(4, String.format("%05d", random.nextInt(100000)));
+                delivery.setString(5, random.nextInt(3) == 0 ? "COMP" : "READY");
+                delivery.addBatch();
+
+                order.setLong(1, orderId);
+                order.setLong(2, memberIds[skewed(random, memberIds.length)]);
+                order.setLong(3, deliveryId);
+                order.setTimestamp(4, Timestamp.valueOf(now.minusMinutes(random.nextInt(365 * 24 * 60))));
+                order.setString(5, canceled ? "CANCEL" : "ORDER");
+                order.addBatch();
+
+                int itemCount = 1 + random.nextInt(maxItemsPerOrder);
+                for (int j = 0; j < itemCount; j++) {
+                    int item = skewed(random, itemIds.length);
+                    orderItem.setLong(1, ids.next(connection, "order_item_seq"));
+                    orderItem.setLong(2, orderId);
+                    orderItem.setLong(3, itemIds[item]);
+                    orderItem.setInt(4, itemPrices[item]);
+                    orderItem.setInt(5, 1 + random.nextInt(5));
+                    orderItem.addBatch();
+                }
+                rows += 2 + itemCount;
+            }
+            // 외래 키 순서대로 실행
+            delivery.executeBatch();
+            order.executeBatch();
+            orderItem.executeBatch();
+        }
+        return rows;
+    }
+
+    // 0 ~ n-1, skew 가 클수록 0 쪽에 몰림
+    private int skewed(ThreadLocalRandom random, int n) {
+        return (int) Math.min(n - 1, (long) (n * Math.pow(random.nextDouble(), skew)));
+    }
+
+    private static void report(String name, long rows, long startNanos) {
+        long elapsedMillis = Math.max(1, (System.nanoTime() - startNanos) / 1_000_000);
+        log.info("대량 데이터 생성 {} rows={} elapsed={}ms rows/sec={}", name, rows, elapsedMillis, rows * 1000 / elapsedMillis);
+    }
+
+    @FunctionalInterface
+    private interface ChunkWriter {
+        // [from, to) 를 적재하고 적재한 row 수 반환
+        long write(Connection connection, IdAllocator ids, int from, int to) throws SQLException;
+    }
+
+    /**
+     * 스레드별 id 할당 - 시퀀스 값 하나로 할당 크기만큼의 id 를 사용 (pooled-lo 와 같은 방식)
+     */
+    private final class IdAllocator {
+        private final Map<String, long[]> blocks = new HashMap<>(); // {다음 id, 끝(미포함)}
+
+        long next(Connection connection, String sequenceName) throws SQLException {
+            long[] block = blocks.computeIfAbsent(sequenceName, s -> new long[2]);
+            if (block[0] == block[1]) {
+                block[0] = nextSequenceValue(connection, sequenceName);
+                block[1] = block[0] + PooledSequenceGenerator.resolveIncrementSize(sessionFactory.getProperties(), sequenceName);
+            }
+            return block[0]++;
+        }
+
+        private long nextSequenceValue(Connection connection, String sequenceName) throws SQLException {
+            try (Statement statement = connection.createStatement();
+                 ResultSet rs = statement.executeQuery(dialect.getSequenceNextValString(sequenceName))) {
+                rs.next();
+                return rs.getLong(1);
+            }
+        }
+    }
+}
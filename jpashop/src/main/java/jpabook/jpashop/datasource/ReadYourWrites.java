@@ -0,0 +1,79 @@
+package jpabook.jpashop.datasource;
+
+/**
+ * 내가 쓴 데이터는 바로 읽을 수 있게 (read-your-writes)
+ *
+ * 복제본은 주 DB 보다 늦기 때문에 쓰기 직후 읽기 전용 트랜잭션이 복제본으로 가면 방금 쓴 데이터가 안 보일 수 있음
+ * - 같은 스레드에서 쓰기 트랜잭션이 있었으면 이후 읽기도 주 DB 로 보냄
+ * - 요청 사이(쓰기 후 리다이렉트 등)는 ReadYourWritesFilter 가 쿠키로 이어줌
+ * - 직접 주 DB 에서 읽어야 하면 try (Scope scope = requirePrimary()) { ... }
+ */
+public abstract class ReadYourWrites {
+
+    private static final ThreadLocal<Context> CONTEXT = new ThreadLocal<>();
+
+    /**
+     * onFirstWrite : 이번 범위에서 처음 쓰기 트랜잭션이 시작될 때 한 번 실행
+     */
+    public static void start(boolean primaryRequired, Runnable onFirstWrite) {
+        CONTEXT.set(new Context(primaryRequired, onFirstWrite));
+    }
+
+    public static void stop() {
+        CONTEXT.remove();
+    }
+
+    /**
+     * 닫을 때까지 읽기도 주 DB 로 보냄
+     * 범위(start ~ stop) 밖이면 새 범위를 만들고 닫을 때 지움 - 풀 스레드에 Context 가 남지 않게 반드시 닫아야 함
+     * 범위 안이면 닫을 때 이전 값으로 되돌림 (그 사이 쓰기가 있었으면 계속 주 DB)
+     */
+    public static Scope requirePrimary() {
+        Context context = CONTEXT.get();
+        if (context == null) {
+            Context created = new Context(true, null);
+            CONTEXT.set(created);
+            return () -> {
+                if (CONTEXT.get() == created) {
+                    CONTEXT.remove();
+                }
+            };
+        }
+        boolean previous = context.primaryRequired;
+        context.primaryRequired = true;
+        return () -> context.primaryRequired = previous || context.written;
+    }
+
+    public static boolean isPrimaryRequired() {
+        Context context = CONTEXT.get();
+        return context != null && context.primaryRequired;
+    }
+
+    static void markWritten() {
+        Context context = CONTEXT.get();
+        if (context == null || context.written) {
+            return;
+        }
+        context.written = true;
+        context.primaryRequired = true;
+        if (context.onFirstWrite != null) {
+            context.onFirstWrite.run();
+        }
+    }
+
+    public interface Scope extends AutoCloseable {
+        @Override
+        void close();
+    }
+
+    private static class Context {
+        private boolean primaryRequired;
+        private boolean written;
+        private final Runnable onFirstWrite;
+
+        private Context(boolean primaryRequired, Runnable onFirstWrite) {
+            this.primaryRequired = primaryRequired;
+            this.onFirstWrite = onFirstWrite;
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package jpabook.jpashop.datasource;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+
+/**
+ * 복제본 상태 확인
+ * lag-query 가 있으면 복제본에서 실행해서 지연(ms)이 max-lag 를 넘는 복제본은 읽기에서 제외
+ * (예: PostgreSQL "select coalesce(extract(epoch from now() - pg_last_xact_replay_timestamp()) * 1000, 0)")
+ * 없으면 연결 가능한지만 확인
+ */
+@Slf4j
+public class ReplicaLagMonitor {
+
+    private final ReplicaRoutingDataSource routingDataSource;
+    private final long maxLagMillis;
+    private final String lagQuery;
+
+    public ReplicaLagMonitor(ReplicaRoutingDataSource routingDataSource, Duration maxLag, String lagQuery) {
+        this.routingDataSource = routingDataSource;
+        this.maxLagMillis = maxLag.toMillis();
+        this.lagQuery = lagQuery;
+    }
+
+    @Scheduled(fixedDelayString = "${jpashop.datasource.lag-check-interval-ms:1000}")
+    public void check() {
+        for (ReplicaRoutingDataSource.Replica replica : routingDataSource.getReplicas()) {
+            boolean available;
+            long lagMillis = 0;
+            try (Connection connection = replica.getDataSource().getConnection()) {
+                if (lagQuery != null && !lagQuery.isBlank()) {
+                    lagMillis = queryLag(connection);
+                    available = lagMillis <= maxLagMillis;
+                } else {
+                    available = connection.isValid(1);
+                }
+            } catch (SQLException e) {
+                available = false;
+                log.debug("복제본 확인 실패 replica={}", replica.getName(), e);
+            }
+
+            if (available != replica.isAvailable()) {
+                log.warn("복제본 상태 변경 replica={} available={} lag={}ms", replica.getName(), available, lagMillis);
+            }
+            replica.update(available, lagMillis);
+        }
+    }
+
+    private long queryLag(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery(lagQuery)) {
+            return rs.next() ? rs.getLong(1) : Long.MAX_VALUE;
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package jpabook.jpashop.datasource;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 읽기 복제본 설정 (jpashop.datasource.routing.enabled=true 일 때 사용)
+ * 주 DB 는 spring.datasource
+ */
+@Getter @Setter
+@ConfigurationProperties(prefix = "jpashop.datasource")
+public class ReplicaProperties {
+
+    private List<Replica> replicas = new ArrayList<>();
+    // 이보다 늦은 복제본은 읽기에서 제외
+    private Duration maxLag = Duration.ofSeconds(5);
+    // 복제본에서 실행해서 지연(ms)을 반환하는 SQL, 없으면 연결만 확인
+    private String lagQuery;
+    // 쓰기 후 이 시간 동안 같은 클라이언트의 읽기는 주 DB 사용
+    private Duration readYourWritesWindow = Duration.ofSeconds(5);
+
+    @Getter @Setter
+    public static class Replica {
+        private String name;
+        private String url;
+        private String username;
+        private String password;
+        private String driverClassName;
+    }
+}
@@ -0,0 +1,110 @@
+package jpabook.jpashop.datasource;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 읽기 전용 트랜잭션은 복제본, 나머지는 주 DB 로 보내는 DataSource
+ *
+ * - 읽기 전용 트랜잭션 : 사용 가능한(연결되고 지연이 max-lag 이하인) 복제본을 돌아가면서 사용
+ *   사용 가능한 복제본이 없거나 read-your-writes 로 주 DB 가 필요하면 주 DB
+ * - 쓰기 트랜잭션, 트랜잭션 밖 : 주 DB
+ *
+ * 트랜잭션 시작 시점에는 아직 읽기 전용 여부가 정해지지 않아서
+ * 실제 커넥션을 첫 SQL 때 가져오는 LazyConnectionDataSourceProxy 로 감싸서 사용해야 함
+ */
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource {
+
+    static final String PRIMARY = "primary";
+
+    private final List<Replica> replicas;
+    private final AtomicInteger next = new AtomicInteger();
+
+    public ReplicaRoutingDataSource(DataSource primary, Map<String, DataSource> replicas) {
+        Map<Object, Object> targets = new HashMap<>(replicas);
+        targets.put(PRIMARY, primary);
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(primary);
+        afterPropertiesSet();
+
+        List<Replica> list = new ArrayList<>();
+        replicas.forEach((name, dataSource) -> list.add(new Replica(name, dataSource)));
+        this.replicas = Collections.unmodifiableList(list);
+    }
+
+    public List<Replica> getReplicas() {
+        return replicas;
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (!TransactionSynchronizationManager.isActualTransactionActive()) {
+            return PRIMARY;
+        }
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            ReadYourWrites.markWritten();
+            return PRIMARY;
+        }
+        if (ReadYourWrites.isPrimaryRequired()) {
+            return PRIMARY;
+        }
+        Replica replica = nextAvailable();
+        return replica != null ? replica.getName() : PRIMARY;
+    }
+
+    private Replica nextAvailable() {
+        int size = replicas.size();
+        int start = Math.floorMod(next.getAndIncrement(), Math.max(1, size));
+        for (int i = 0; i < size; i++) {
+            Replica replica = replicas.get((start + i) % size);
+            if (replica.isAvailable()) {
+                return replica;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 복제본 상태 (ReplicaLagMonitor 가 갱신)
+     */
+    public static class Replica {
+        private final String name;
+        private final DataSource dataSource;
+        private volatile boolean available = true;
+        private volatile long lagMillis;
+
+        private Replica(String name, DataSource dataSource) {
+            this.name = name;
+            this.dataSource = dataSource;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public DataSource getDataSource() {
+            return dataSource;
+        }
+
+        public boolean isAvailable() {
+            return available;
+        }
+
+        public long getLagMillis() {
+            return lagMillis;
+        }
+
+        void update(boolean available, long lagMillis) {
+            this.available = available;
+            this.lagMillis = lagMillis;
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package jpabook.jpashop.datasource;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.resource.jdbc.spi.PhysicalConnectionHandlingMode;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.Ordered;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 읽기/쓰기 DataSource 분리 (jpashop.datasource.routing.enabled=true)
+ *
+ * 서비스는 클래스 단위로 @Transactional(readOnly = true) 라서 조회는 복제본, 쓰기 메서드는 주 DB 로 감
+ * 로컬에서는 H2 두 개로 확인 (jpashop.datasource.replicas[0].url=jdbc:h2:tcp://localhost/~/jpashop-replica)
+ *
+ * 스프링의 하이버네이트 설정은 커넥션을 세션이 닫힐 때까지 잡고 있음 (DELAYED_ACQUISITION_AND_HOLD)
+ * open-in-view 로 요청 내내 세션이 열려 있으면 첫 SQL 에서 고른 커넥션을 이후 트랜잭션도 그대로 써서
+ * 읽은 뒤 쓰는 요청의 쓰기가 복제본으로 감 - 트랜잭션이 끝날 때마다 커넥션을 반납하게 해서 트랜잭션마다 다시 고름
+ */
+@Configuration
+@ConditionalOnProperty(name = "jpashop.datasource.routing.enabled", havingValue = "true")
+@EnableConfigurationProperties(ReplicaProperties.class)
+public class RoutingDataSourceConfig {
+
+    @Bean
+    @Primary
+    public DataSource dataSource(DataSourceProperties dataSourceProperties, ReplicaProperties replicaProperties) {
+        DataSource primary = dataSourceProperties.initializeDataSourceBuilder().build();
+
+        Map<String, DataSource> replicas = new LinkedHashMap<>();
+        for (int i = 0; i < replicaProperties.getReplicas().size(); i++) {
+            ReplicaProperties.Replica replica = replicaProperties.getReplicas().get(i);
+            String name = replica.getName() != null ? replica.getName() : "replica" + i;
+            replicas.put(name, DataSourceBuilder.create()
+                    .driverClassName(replica.getDriverClassName() != null ? replica.getDriverClassName() : dataSourceProperties.getDriverClassName())
+                    .url(replica.getUrl())
+                    .username(replica.getUsername() != null ? replica.getUsername() : dataSourceProperties.getUsername())
+                    .password(replica.getPassword() != null ? replica.getPassword() : dataSourceProperties.getPassword())
+                    .build());
+        }
+
+        return new LazyConnectionDataSourceProxy(new ReplicaRoutingDataSource(primary, replicas));
+    }
+
+    @Bean
+    public HibernatePropertiesCustomizer releaseConnectionAfterTransaction() {
+        return properties -> properties.put(AvailableSettings.CONNECTION_HANDLING,
+                PhysicalConnectionHandlingMode.DELAYED_ACQUISITION_AND_RELEASE_AFTER_TRANSACTION);
+    }
+
+    @Bean
+    public ReplicaLagMonitor replicaLagMonitor(DataSource dataSource, ReplicaProperties replicaProperties) throws SQLException {
+        return new ReplicaLagMonitor(dataSource.unwrap(ReplicaRoutingDataSource.class),
+                replicaProperties.getMaxLag(), replicaProperties.getLagQuery());
+    }
+
+    @Bean
+    public FilterRegistrationBean<ReadYourWritesFilter> readYourWritesFilter(ReplicaProperties replicaProperties) {
+        FilterRegistrationBean<ReadYourWritesFilter> registration =
+                new FilterRegistrationBean<>(new ReadYourWritesFilter(replicaProperties.getReadYourWritesWindow()));
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE + 10);
+        return registration;
+    }
+}
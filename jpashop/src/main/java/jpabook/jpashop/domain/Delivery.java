@@ -3,18 +3,28 @@ package jpabook.jpashop.domain;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.Getter;
 import lombok.Setter;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.LazyToOne;
+import org.hibernate.annotations.LazyToOneOption;
+import org.hibernate.annotations.Parameter;
 
 import javax.persistence.*;
 
 @Entity
 @Getter @Setter
 public class Delivery {
-    @Id @GeneratedValue
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "delivery_seq")
+    @GenericGenerator(name = "delivery_seq", strategy = PooledSequenceGenerator.NAME,
+            parameters = @Parameter(name = "sequence_name", value = "delivery_seq"))
     @Column(name = "delivery_id")
     private Long id;
 
+    // mappedBy 쪽 OneToOne 은 프록시로 지연 로딩이 안됨 (FK 가 없어서 null 인지 알 수 없음)
+    // 바이트코드 향상(build.gradle hibernate.enhance) + NO_PROXY 로 실제 접근할 때만 조회
     @JsonIgnore
     @OneToOne(mappedBy = "delivery", fetch = FetchType.LAZY)
+    @LazyToOne(LazyToOneOption.NO_PROXY)
     private Order order;
 
     @Embedded
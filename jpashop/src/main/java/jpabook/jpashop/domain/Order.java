@@ -1,9 +1,12 @@
 package jpabook.jpashop.domain;
 
+import jpabook.jpashop.domain.item.StockHandler;
 import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
 
 import javax.persistence.*;
 import java.time.LocalDateTime;
@@ -11,11 +14,14 @@ import java.util.ArrayList;
 import java.util.List;
 
 @Entity
-@Table(name = "orders")
+@Table(name = "orders", indexes = @Index(name = "idx_orders_order_date", columnList = "order_date, order_id"))
 @Getter @Setter
 @NoArgsConstructor(access = AccessLevel.PROTECTED)
 public class Order {
-    @Id @GeneratedValue
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "orders_seq")
+    @GenericGenerator(name = "orders_seq", strategy = PooledSequenceGenerator.NAME,
+            parameters = @Parameter(name = "sequence_name", value = "orders_seq"))
     @Column(name = "order_id")
     private Long id;
 
@@ -35,7 +41,13 @@ public class Order {
     @Enumerated(EnumType.STRING)
     private OrderStatus status; //주문 상태
 
+    // 같은 주문을 동시에 취소하는 경우 한 쪽만 성공
+    @Version
+    private Long version;
+
     //연관관계 메서드
+    // member.orders 는 mappedBy 쪽 List(PersistentBag) 이라서 초기화 전이면 add 가 큐에만 쌓이고 컬렉션을 로딩하지 않음
+    // 주문 이력이 많은 회원도 주문 생성 비용이 같음 (Set 으로 바꾸거나 orphanRemoval 을 켜면 전체를 로딩하므로 주의)
     public void setMember(Member member){
         this.member = member;
         member.getOrders().add(this);
@@ -68,12 +80,16 @@ public class Order {
     // 비즈니스 로직
     // 주문 취소
     public void cancel(){
+        cancel(StockHandler.ENTITY);
+    }
+
+    public void cancel(StockHandler stockHandler){
         if (delivery.getStatus() == DeliveryStatus.COMP){
             throw new IllegalStateException("이미 배송 완료된 상품은 취소가 불가능합니다.");
         }
         this.setStatus(OrderStatus.CANCEL);
         for (OrderItem orderItem: this.orderItems) {
-            orderItem.cancel();
+            orderItem.cancel(stockHandler);
         }
     }
 
@@ -2,10 +2,13 @@ package jpabook.jpashop.domain;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import jpabook.jpashop.domain.item.Item;
+import jpabook.jpashop.domain.item.StockHandler;
 import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
 
 import javax.persistence.*;
 
@@ -13,7 +16,10 @@ import javax.persistence.*;
 @Getter @Setter
 @NoArgsConstructor(access = AccessLevel.PROTECTED)
 public class OrderItem {
-    @Id @GeneratedValue
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "order_item_seq")
+    @GenericGenerator(name = "order_item_seq", strategy = PooledSequenceGenerator.NAME,
+            parameters = @Parameter(name = "sequence_name", value = "order_item_seq"))
     @Column(name = "order_item_id")
     private Long id;
 
@@ -31,17 +37,25 @@ public class OrderItem {
 
     // 생성 메서드
     public static OrderItem createOrderItem(Item item, int orderPrice, int count){
+        return createOrderItem(item, orderPrice, count, StockHandler.ENTITY);
+    }
+
+    public static OrderItem createOrderItem(Item item, int orderPrice, int count, StockHandler stockHandler){
         OrderItem orderItem = new OrderItem();
         orderItem.setItem(item);
         orderItem.setOrderPrice(orderPrice);
         orderItem.setCount(count);
-        item.removeStock(count);
+        stockHandler.remove(item, count);
         return orderItem;
     }
 
     // 비즈니스 로직
     public void cancel() {
-        getItem().addStock(count);
+        cancel(StockHandler.ENTITY);
+    }
+
+    public void cancel(StockHandler stockHandler) {
+        stockHandler.add(getItem(), count);
     }
 
     /**
@@ -0,0 +1,46 @@
+package jpabook.jpashop.domain;
+
+import org.hibernate.MappingException;
+import org.hibernate.engine.config.spi.ConfigurationService;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
+import org.hibernate.id.enhanced.StandardOptimizerDescriptor;
+import org.hibernate.service.ServiceRegistry;
+import org.hibernate.type.Type;
+
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * 엔티티별 시퀀스 + pooled-lo 최적화
+ * 시퀀스를 한 번 호출하면 increment_size 개의 id 를 메모리에서 할당하기 때문에
+ * persist 마다 시퀀스를 호출하지 않고, id 가 미리 정해져서 insert 를 JDBC batch 로 묶을 수 있음
+ *
+ * 할당 크기는 설정으로 변경 (spring.jpa.properties.jpashop.id.*)
+ *  - default_increment_size : 기본값
+ *  - increment_size.{시퀀스 이름} : 시퀀스별 값
+ */
+public class PooledSequenceGenerator extends SequenceStyleGenerator {
+
+    public static final String NAME = "jpabook.jpashop.domain.PooledSequenceGenerator";
+    public static final String DEFAULT_INCREMENT_SIZE_SETTING = "jpashop.id.default_increment_size";
+    public static final String INCREMENT_SIZE_SETTING = "jpashop.id.increment_size";
+    private static final int DEFAULT_INCREMENT_SIZE = 50;
+
+    @Override
+    public void configure(Type type, Properties params, ServiceRegistry serviceRegistry) throws MappingException {
+        Map<?, ?> settings = serviceRegistry.getService(ConfigurationService.class).getSettings();
+        String sequenceName = params.getProperty(SEQUENCE_PARAM);
+
+        params.setProperty(INCREMENT_PARAM, String.valueOf(resolveIncrementSize(settings, sequenceName)));
+        params.setProperty(OPT_PARAM, StandardOptimizerDescriptor.POOLED_LO.getExternalName());
+        super.configure(type, params, serviceRegistry);
+    }
+
+    public static int resolveIncrementSize(Map<?, ?> settings, String sequenceName) {
+        Object value = settings.get(INCREMENT_SIZE_SETTING + "." + sequenceName);
+        if (value == null) {
+            value = settings.get(DEFAULT_INCREMENT_SIZE_SETTING);
+        }
+        return value != null ? Integer.parseInt(value.toString()) : DEFAULT_INCREMENT_SIZE;
+    }
+}
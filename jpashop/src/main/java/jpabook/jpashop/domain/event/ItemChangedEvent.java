@@ -0,0 +1,15 @@
+package jpabook.jpashop.domain.event;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * 상품 정보 변경 (ItemService.updateItem)
+ * 주문 조회 DTO 에는 상품 이름만 들어가기 때문에 이름이 바뀌었는지 같이 전달
+ */
+@Getter
+@RequiredArgsConstructor
+public class ItemChangedEvent {
+    private final Long itemId;
+    private final boolean nameChanged;
+}
@@ -0,0 +1,15 @@
+package jpabook.jpashop.domain.event;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * 회원 가입/정보 변경 (MemberService)
+ * 새로 가입한 회원은 아직 주문이 없어서 주문 조회에는 영향이 없으므로 가입인지 같이 전달
+ */
+@Getter
+@RequiredArgsConstructor
+public class MemberChangedEvent {
+    private final Long memberId;
+    private final boolean joined;
+}
@@ -0,0 +1,13 @@
+package jpabook.jpashop.domain.event;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * 주문 생성/취소 (OrderService)
+ */
+@Getter
+@RequiredArgsConstructor
+public class OrderChangedEvent {
+    private final Long orderId;
+}
@@ -1,9 +1,15 @@
 package jpabook.jpashop.domain.item;
 
+import jpabook.jpashop.cache.CacheRegions;
 import jpabook.jpashop.domain.Category;
+import jpabook.jpashop.domain.PooledSequenceGenerator;
 import jpabook.jpashop.exception.NotEnoughStockException;
 import lombok.Getter;
 import lombok.Setter;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
 
 import javax.persistence.*;
 import java.util.ArrayList;
@@ -12,11 +18,15 @@ import java.util.List;
 @Entity
 @Inheritance(strategy = InheritanceType.SINGLE_TABLE)
 @DiscriminatorColumn(name = "dtype")
+// 하위 타입(Book, Album, Movie)도 같은 영역에 캐시됨
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = CacheRegions.ITEM)
 @Getter
 @Setter
 public abstract class Item {
     @Id
-    @GeneratedValue
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "item_seq")
+    @GenericGenerator(name = "item_seq", strategy = PooledSequenceGenerator.NAME,
+            parameters = @Parameter(name = "sequence_name", value = "item_seq"))
     @Column(name = "item_id")
     private Long id;
 
@@ -24,6 +34,10 @@ public abstract class Item {
     private int price;
     private int stockQuantity;
 
+    // 동시 주문/취소가 서로의 재고 변경을 덮어쓰지 않도록 낙관적 락 (충돌하면 OrderRetryExecutor 가 재시도)
+    @Version
+    private Long version;
+
     @ManyToMany(mappedBy = "items")
     private List<Category> categories = new ArrayList<>();
 
@@ -0,0 +1,25 @@
+package jpabook.jpashop.domain.item;
+
+/**
+ * 주문/취소 시 재고를 빼고 되돌리는 방법
+ * 기본은 엔티티의 stockQuantity 를 직접 변경 (변경 감지로 반영)
+ */
+public interface StockHandler {
+
+    StockHandler ENTITY = new StockHandler() {
+        @Override
+        public void remove(Item item, int quantity) {
+            item.removeStock(quantity);
+        }
+
+        @Override
+        public void add(Item item, int quantity) {
+            item.addStock(quantity);
+        }
+    };
+
+    // 재고가 부족하면 NotEnoughStockException
+    void remove(Item item, int quantity);
+
+    void add(Item item, int quantity);
+}
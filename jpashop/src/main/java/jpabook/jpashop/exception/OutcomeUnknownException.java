@@ -0,0 +1,13 @@
+package jpabook.jpashop.exception;
+
+/**
+ * 처리 결과(커밋 여부)를 알 수 없는 실패
+ * 예: 주문 파이프라인이 주문을 꺼내 처리하는 중에 결과 대기 시간이 지남
+ * 재시도가 다시 처리하면 중복될 수 있으므로 Idempotency-Key 선점을 풀지 않음
+ */
+public class OutcomeUnknownException extends IllegalStateException {
+
+    public OutcomeUnknownException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,242 @@
+package jpabook.jpashop.idempotency;
+
+import jpabook.jpashop.exception.OutcomeUnknownException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.util.DigestUtils;
+import org.springframework.util.StreamUtils;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ReadListener;
+import javax.servlet.ServletException;
+import javax.servlet.ServletInputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+import javax.servlet.http.HttpServletResponse;
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Idempotency-Key 헤더가 있는 POST 요청의 첫 응답을 저장해 두고, 같은 키로 다시 오면 처리하지 않고 그대로 응답
+ * 게이트웨이 재시도로 같은 주문이 중복 생성되지 않게 함
+ *
+ * - 같은 키로 다른 요청(경로, 파라미터/본문)이 오면 422
+ * - 첫 요청이 아직 처리 중이면 409 (잠시 후 재시도), 처리 중인 채로 선점이 만료됐으면 재시도가 이어서 처리
+ * - 성공(2xx)과 리다이렉트(3xx)만 저장
+ * - 실패한 요청은 처리가 반영되지 않은 것이 확실할 때만 선점을 풀어서 재시도가 다시 처리
+ *   주문은 주문 트랜잭션 안에서 반영 표시를 남기므로(IdempotencyStore.markApplied) 커밋 뒤의 실패는 풀지 않고,
+ *   결과를 알 수 없는 실패(OutcomeUnknownException, 예: 주문 파이프라인 결과 대기 시간 초과)는 처리 중으로 남겨서
+ *   선점이 만료된 뒤 반영 표시가 없을 때만 재시도가 이어받음
+ */
+@Component
+public class IdempotencyKeyFilter extends OncePerRequestFilter {
+
+    public static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+    public static final String REPLAYED_HEADER = "Idempotency-Replayed";
+    private static final int MAX_KEY_LENGTH = 255;
+
+    private final IdempotencyStore store;
+    private final String[] paths;
+
+    public IdempotencyKeyFilter(IdempotencyStore store,
+                                @Value("${jpashop.idempotency.paths:/order,/api/}") String[] paths) {
+        this.store = store;
+        this.paths = paths;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        if (!"POST".equals(request.getMethod()) || request.getHeader(IDEMPOTENCY_KEY_HEADER) == null) {
+            return true;
+        }
+        String uri = request.getRequestURI();
+        for (String path : paths) {
+            if (path.endsWith("/") ? uri.startsWith(path) : uri.equals(path)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain) throws ServletException, IOException {
+        String key = request.getHeader(IDEMPOTENCY_KEY_HEADER);
+        if (key.isBlank() || key.length() > MAX_KEY_LENGTH) {
+            response.sendError(HttpStatus.BAD_REQUEST.value(), "Idempotency-Key 는 1~" + MAX_KEY_LENGTH + "자여야 합니다.");
+            return;
+        }
+
+        // 폼 요청은 본문을 먼저 읽으면 파라미터를 못 읽으므로 파라미터로 해시
+        HttpServletRequest target = request;
+        ByteArrayOutputStream fingerprintSource = new ByteArrayOutputStream();
+        String query = request.getQueryString();
+        fingerprintSource.writeBytes((request.getMethod() + " " + request.getRequestURI() + (query != null ? "?" + query : "") + "\n")
+                .getBytes(StandardCharsets.UTF_8));
+        if (isForm(request)) {
+            for (Map.Entry<String, String[]> param : new TreeMap<>(request.getParameterMap()).entrySet()) {
+                fingerprintSource.writeBytes((param.getKey() + "=" + String.join(",", param.getValue()) + "&")
+                        .getBytes(StandardCharsets.UTF_8));
+            }
+        } else {
+            byte[] body = StreamUtils.copyToByteArray(request.getInputStream());
+            fingerprintSource.writeBytes(body);
+            target = new CachedBodyRequest(request, body);
+        }
+        String fingerprint = DigestUtils.md5DigestAsHex(fingerprintSource.toByteArray());
+
+        StoredResponse stored = store.find(key);
+        if (stored == null || stored.isInProgress()) {
+            if (store.claim(key, fingerprint)) {
+                process(key, fingerprint, target, response, filterChain);
+                return;
+            }
+            stored = store.find(key);
+        }
+
+        if (stored != null && !stored.getFingerprint().equals(fingerprint)) {
+            response.sendError(HttpStatus.UNPROCESSABLE_ENTITY.value(), "같은 Idempotency-Key 로 다른 요청을 보낼 수 없습니다.");
+        } else if (stored == null || stored.isInProgress()) {
+            response.sendError(HttpStatus.CONFLICT.value(), "같은 Idempotency-Key 의 요청을 처리 중입니다.");
+        } else {
+            replay(stored, response);
+        }
+    }
+
+    private void process(String key, String fingerprint, HttpServletRequest request, HttpServletResponse response,
+                         FilterChain filterChain) throws ServletException, IOException {
+        ContentCachingResponseWrapper wrapper = new ContentCachingResponseWrapper(response);
+        boolean completed = false;
+        boolean outcomeUnknown = false;
+        IdempotencyKeyHolder.set(key);
+        try {
+            filterChain.doFilter(request, wrapper);
+            if (wrapper.getStatus() < 400) {
+                store.complete(key, new StoredResponse(fingerprint, wrapper.getStatus(), wrapper.getContentType(),
+                        wrapper.getHeader(HttpHeaders.LOCATION), wrapper.getContentAsByteArray(), LocalDateTime.now()));
+                completed = true;
+            }
+        } catch (ServletException | IOException | RuntimeException e) {
+            outcomeUnknown = isOutcomeUnknown(e);
+            throw e;
+        } finally {
+            IdempotencyKeyHolder.clear();
+            if (!completed && !outcomeUnknown) {
+                store.release(key);
+            }
+            wrapper.copyBodyToResponse();
+        }
+    }
+
+    private static boolean isOutcomeUnknown(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof OutcomeUnknownException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void replay(StoredResponse stored, HttpServletResponse response) throws IOException {
+        response.setStatus(stored.getStatus());
+        response.setHeader(REPLAYED_HEADER, "true");
+        if (stored.getLocation() != null) {
+            response.setHeader(HttpHeaders.LOCATION, stored.getLocation());
+        }
+        if (stored.getContentType() != null) {
+            response.setContentType(stored.getContentType());
+        }
+        if (stored.getBody() != null) {
+            response.setContentLength(stored.getBody().length);
+            response.getOutputStream().write(stored.getBody());
+        }
+    }
+
+    private static boolean isForm(HttpServletRequest request) {
+        String contentType = request.getContentType();
+        return contentType != null && contentType.startsWith(MediaType.APPLICATION_FORM_URLENCODED_VALUE);
+    }
+
+    // 해시하려고 읽은 본문을 컨트롤러가 다시 읽을 수 있게 함
+    private static class CachedBodyRequest extends HttpServletRequestWrapper {
+        private final byte[] body;
+
+        private CachedBodyRequest(HttpServletRequest request, byte[] body) {
+            super(request);
+            this.body = body;
+        }
+
+        @Override
+        public ServletInputStream getInputStream() {
+            ByteArrayInputStream in = new ByteArrayInputStream(body);
+            return new ServletInputStream() {
+                @Override
+                public int read() {
+                    return in.read();
+                }
+
+                @Override
+                public int read(byte[] b, int off, int len) {
+                    return in.read(b, off, len);
+                }
+
+                @Override
+                public boolean isFinished() {
+                    return in.available() == 0;
+                }
+
+                @Override
+                public boolean isReady() {
+                    return true;
+                }
+
+                // 본문이 이미 메모리에 있으므로 바로 읽을 수 있다고 알림
+                @Override
+                public void setReadListener(ReadListener readListener) {
+                    try {
+                        int remaining = in.available();
+                        while (remaining > 0) {
+                            readListener.onDataAvailable();
+                            if (in.available() == remaining) {
+                                return; // 리스너가 읽지 않으면 남은 본문은 직접 read 로 읽어야 함
+                            }
+                            remaining = in.available();
+                        }
+                        readListener.onAllDataRead();
+                    } catch (IOException e) {
+                        readListener.onError(e);
+                    }
+                }
+            };
+        }
+
+        @Override
+        public BufferedReader getReader() {
+            String encoding = getCharacterEncoding();
+            return new BufferedReader(new InputStreamReader(getInputStream(),
+                    encoding != null ? Charset.forName(encoding) : StandardCharsets.UTF_8));
+        }
+
+        @Override
+        public int getContentLength() {
+            return body.length;
+        }
+
+        @Override
+        public long getContentLengthLong() {
+            return body.length;
+        }
+    }
+}
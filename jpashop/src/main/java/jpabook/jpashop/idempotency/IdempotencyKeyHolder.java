@@ -0,0 +1,22 @@
+package jpabook.jpashop.idempotency;
+
+/**
+ * 현재 스레드가 처리 중인 요청의 Idempotency-Key (IdempotencyKeyFilter 가 선점한 동안만)
+ * 주문처럼 다시 처리하면 안 되는 서비스가 자기 트랜잭션 안에서 IdempotencyStore.markApplied 로 반영 표시를 남길 때 사용
+ */
+public abstract class IdempotencyKeyHolder {
+
+    private static final ThreadLocal<String> HOLDER = new ThreadLocal<>();
+
+    public static String get() {
+        return HOLDER.get();
+    }
+
+    static void set(String key) {
+        HOLDER.set(key);
+    }
+
+    static void clear() {
+        HOLDER.remove();
+    }
+}
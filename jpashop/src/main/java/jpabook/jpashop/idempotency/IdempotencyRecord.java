@@ -0,0 +1,51 @@
+package jpabook.jpashop.idempotency;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.Lob;
+import javax.persistence.Table;
+import java.time.LocalDateTime;
+
+/**
+ * Idempotency-Key 별 첫 응답 (재시작 후에도 같은 키의 재시도를 중복 처리하지 않도록 저장)
+ * 테이블 생성용 매핑이고 읽고 쓰는 것은 IdempotencyStore 가 JDBC 로 처리
+ */
+@Entity
+@Table(name = "idempotency_key", indexes = @Index(name = "idx_idempotency_key_created_at", columnList = "created_at"))
+@Getter
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+public class IdempotencyRecord {
+
+    @Id
+    @Column(name = "idempotency_key")
+    private String key;
+
+    // 요청(메서드, 경로, 파라미터/본문) 해시 - 같은 키로 다른 요청이 오면 거절
+    @Column(length = 32, nullable = false)
+    private String fingerprint;
+
+    // 0 이면 처리 중
+    private int status;
+
+    // 처리가 커밋됨 (처리한 트랜잭션 안에서 표시) - 처리 중이어도 선점을 풀거나 이어받지 않음
+    private boolean applied;
+
+    private String contentType;
+    private String location;
+
+    @Lob
+    private byte[] body;
+
+    @Column(nullable = false)
+    private LocalDateTime createdAt;
+
+    // 선점한 시각 - 처리 중(status 0)인 채로 in-progress-timeout 이 지나면 다른 요청이 이어받음
+    @Column(nullable = false)
+    private LocalDateTime claimedAt;
+}
@@ -0,0 +1,134 @@
+package jpabook.jpashop.idempotency;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Idempotency-Key 저장소
+ * - 완료된 응답은 메모리 LRU(max-entries)에 두고 재시도는 해시 조회 한 번으로 응답
+ * - LRU 에 없으면(밀려났거나 재시작, 다른 인스턴스) idempotency_key 테이블에서 조회
+ * - 처리 시작 전에 키를 insert 해서 선점 (PK 중복이면 다른 요청이 이미 처리 중)
+ * - 선점은 in-progress-timeout 동안만 유효 - 처리하던 인스턴스가 죽어서 처리 중으로 남은 키는
+ *   시간이 지나면 같은 요청의 재시도가 이어받음 (가장 오래 걸리는 요청보다 길게 설정)
+ * - 처리가 커밋된 키(markApplied)는 응답을 저장하지 못했어도 선점을 풀거나 이어받지 않음
+ * - ttl 이 지난 키는 주기적으로 삭제
+ */
+@Slf4j
+@Component
+public class IdempotencyStore {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final Duration ttl;
+    private final Duration inProgressTimeout;
+    private final Map<String, StoredResponse> recent;
+
+    public IdempotencyStore(JdbcTemplate jdbcTemplate,
+                            @Value("${jpashop.idempotency.ttl:24h}") Duration ttl,
+                            @Value("${jpashop.idempotency.max-entries:10000}") int maxEntries,
+                            @Value("${jpashop.idempotency.in-progress-timeout:30s}") Duration inProgressTimeout) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.ttl = ttl;
+        this.inProgressTimeout = inProgressTimeout;
+        this.recent = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, StoredResponse> eldest) {
+                return size() > maxEntries;
+            }
+        });
+    }
+
+    /**
+     * 저장된 응답 (처리 중이면 status 0), 없거나 만료됐으면 null
+     */
+    public StoredResponse find(String key) {
+        StoredResponse response = recent.get(key);
+        if (response == null) {
+            List<StoredResponse> rows = jdbcTemplate.query(
+                    "select fingerprint, status, content_type, location, body, created_at from idempotency_key where idempotency_key = ?",
+                    (rs, rowNum) -> new StoredResponse(rs.getString(1), rs.getInt(2), rs.getString(3), rs.getString(4),
+                            rs.getBytes(5), rs.getTimestamp(6).toLocalDateTime()),
+                    key);
+            response = rows.isEmpty() ? null : rows.get(0);
+            if (response != null && !response.isInProgress()) {
+                recent.put(key, response);
+            }
+        }
+        if (response != null && response.getCreatedAt().isBefore(LocalDateTime.now().minus(ttl))) {
+            return null;
+        }
+        return response;
+    }
+
+    /**
+     * 키 선점 - 이미 있으면 false (같은 요청의 선점이 만료됐으면 이어받음)
+     */
+    public boolean claim(String key, String fingerprint) {
+        LocalDateTime now = LocalDateTime.now();
+        try {
+            jdbcTemplate.update("insert into idempotency_key (idempotency_key, fingerprint, status, applied, created_at, claimed_at) values (?, ?, 0, false, ?, ?)",
+                    key, fingerprint, Timestamp.valueOf(now), Timestamp.valueOf(now));
+            return true;
+        } catch (DuplicateKeyException e) {
+            // 처리 중인 채로 선점이 만료된 키는 같은 요청이 이어받음 (조건부 update 라 한 요청만 성공)
+            // 처리가 커밋된 키는 응답이 없어도 이어받지 않음
+            int taken = jdbcTemplate.update("update idempotency_key set created_at = ?, claimed_at = ?"
+                            + " where idempotency_key = ? and status = 0 and applied = false and fingerprint = ? and claimed_at < ?",
+                    Timestamp.valueOf(now), Timestamp.valueOf(now), key, fingerprint, Timestamp.valueOf(now.minus(inProgressTimeout)));
+            if (taken > 0) {
+                log.warn("만료된 Idempotency-Key 선점을 이어받음 key={}", key);
+                return true;
+            }
+            // 만료된 키는 지우고 다시 선점
+            int deleted = jdbcTemplate.update("delete from idempotency_key where idempotency_key = ? and created_at < ?",
+                    key, Timestamp.valueOf(LocalDateTime.now().minus(ttl)));
+            return deleted > 0 && claim(key, fingerprint);
+        }
+    }
+
+    public void complete(String key, StoredResponse response) {
+        jdbcTemplate.update("update idempotency_key set status = ?, content_type = ?, location = ?, body = ? where idempotency_key = ?",
+                response.getStatus(), response.getContentType(), response.getLocation(), response.getBody(), key);
+        recent.put(key, response);
+    }
+
+    /**
+     * 처리가 DB 에 반영됨을 표시 (key 가 null 이면 무시)
+     * 처리하는 트랜잭션 안에서 호출해서 커밋될 때만 남고 롤백되면 같이 사라지게 함
+     */
+    public void markApplied(String key) {
+        if (key != null) {
+            jdbcTemplate.update("update idempotency_key set applied = true where idempotency_key = ? and status = 0", key);
+        }
+    }
+
+    /**
+     * 처리 실패(4xx, 5xx, 예외) - 재시도가 다시 처리할 수 있게 선점 해제
+     * 반영 표시가 있으면(커밋 뒤에 실패) 풀지 않음
+     *
+     * @return 선점을 풀었으면 true
+     */
+    public boolean release(String key) {
+        return jdbcTemplate.update("delete from idempotency_key where idempotency_key = ? and status = 0 and applied = false", key) > 0;
+    }
+
+    @Scheduled(fixedDelayString = "${jpashop.idempotency.purge-interval-ms:600000}")
+    public void purge() {
+        int deleted = jdbcTemplate.update("delete from idempotency_key where created_at < ?",
+                Timestamp.valueOf(LocalDateTime.now().minus(ttl)));
+        if (deleted > 0) {
+            log.info("만료된 Idempotency-Key 삭제 count={}", deleted);
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package jpabook.jpashop.idempotency;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Getter
+@RequiredArgsConstructor
+public class StoredResponse {
+    private final String fingerprint;
+    private final int status; // 0 이면 처리 중
+    private final String contentType;
+    private final String location;
+    private final byte[] body;
+    private final LocalDateTime createdAt;
+
+    public boolean isInProgress() {
+        return status == 0;
+    }
+}
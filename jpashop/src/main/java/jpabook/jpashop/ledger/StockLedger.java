@@ -0,0 +1,194 @@
+package jpabook.jpashop.ledger;
+
+import jpabook.jpashop.domain.Order;
+import jpabook.jpashop.domain.OrderItem;
+import jpabook.jpashop.domain.item.Item;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 재고 변동 원장
+ *
+ * - 주문/취소/관리자 수정/상품 등록마다 (상품, 변동량, 사유, 주문) 을 stock_movement 에 추가
+ *   트랜잭션 안에서는 모아 두었다가 커밋 직전에 같은 트랜잭션에서 JDBC batch insert 한 번으로 기록
+ *   (재고 변경과 원장이 같이 커밋되거나 같이 롤백됨)
+ * - 주기적으로 상품별 스냅샷을 갱신해서 현재 재고를 "스냅샷 + 이후 원장" 으로 계산 (스냅샷 이후 건수만큼만 읽음)
+ *   원장 id 는 insert 할 때 정해지고 커밋 순서와 다를 수 있어서
+ *   snapshot-settle 보다 오래된 원장까지만 스냅샷에 포함함 (아직 커밋 안 된 작은 id 를 건너뛰지 않도록)
+ */
+@Slf4j
+@Component
+public class StockLedger {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final boolean enabled;
+    private final Duration snapshotSettle;
+
+    public StockLedger(JdbcTemplate jdbcTemplate,
+                       @Value("${jpashop.stock.ledger.enabled:true}") boolean enabled,
+                       @Value("${jpashop.stock.ledger.snapshot-settle:1m}") Duration snapshotSettle) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.enabled = enabled;
+        this.snapshotSettle = snapshotSettle;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void recordInit(Item item) {
+        record(item.getId(), item.getStockQuantity(), StockMovementReason.INIT, null);
+    }
+
+    public void recordAdjust(Long itemId, int delta) {
+        record(itemId, delta, StockMovementReason.ADJUST, null);
+    }
+
+    public void recordOrder(Order order) {
+        for (OrderItem orderItem : order.getOrderItems()) {
+            record(orderItem.getItem().getId(), -orderItem.getCount(), StockMovementReason.ORDER, order.getId());
+        }
+    }
+
+    public void recordCancel(Order order) {
+        for (OrderItem orderItem : order.getOrderItems()) {
+            record(orderItem.getItem().getId(), orderItem.getCount(), StockMovementReason.CANCEL, order.getId());
+        }
+    }
+
+    /**
+     * 트랜잭션 안이면 커밋 직전에, 밖이면 바로 기록
+     */
+    @SuppressWarnings("unchecked")
+    public void record(Long itemId, int delta, StockMovementReason reason, Long orderId) {
+        if (!enabled || delta == 0) {
+            return;
+        }
+        Object[] movement = {itemId, delta, reason.name(), orderId};
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            insert(List.<Object[]>of(movement));
+            return;
+        }
+
+        List<Object[]> pending = (List<Object[]>) TransactionSynchronizationManager.getResource(this);
+        if (pending == null) {
+            List<Object[]> batch = new ArrayList<>();
+            TransactionSynchronizationManager.bindResource(this, batch);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void beforeCommit(boolean readOnly) {
+                    insert(batch);
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(StockLedger.this);
+                }
+            });
+            pending = batch;
+        }
+        pending.add(movement);
+    }
+
+    private void insert(List<Object[]> movements) {
+        if (movements.isEmpty()) {
+            return;
+        }
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        List<Object[]> batchArgs = new ArrayList<>(movements.size());
+        for (Object[] movement : movements) {
+            batchArgs.add(new Object[]{movement[0], movement[1], movement[2], movement[3], now});
+        }
+        jdbcTemplate.batchUpdate("insert into stock_movement (item_id, delta, reason, order_id, created_at) values (?, ?, ?, ?, ?)", batchArgs);
+    }
+
+    // 처음 스냅샷을 만드는 상품 - 다른 인스턴스가 먼저 만들었으면 건너뜀 (다음 실행 때 이어서 더함)
+    private void insertSnapshot(Long itemId, long quantity, long watermark, Timestamp now) {
+        try {
+            jdbcTemplate.update("insert into stock_snapshot (item_id, quantity, last_movement_id, created_at) values (?, ?, ?, ?)",
+                    itemId, quantity, watermark, now);
+        } catch (DuplicateKeyException e) {
+            log.debug("재고 스냅샷이 이미 있음 itemId={}", itemId);
+        }
+    }
+
+    /**
+     * 원장으로 계산한 현재 재고 (스냅샷 + 이후 원장)
+     */
+    public long currentStock(Long itemId) {
+        Long stock = jdbcTemplate.queryForObject(
+                "select coalesce((select quantity from stock_snapshot where item_id = ?), 0)" +
+                        " + coalesce((select sum(delta) from stock_movement where item_id = ?" +
+                        "   and stock_movement_id > coalesce((select last_movement_id from stock_snapshot where item_id = ?), 0)), 0)",
+                Long.class, itemId, itemId, itemId);
+        return stock != null ? stock : 0;
+    }
+
+    /**
+     * 스냅샷 갱신 - 상품별로 마지막 스냅샷 이후 원장을 더함
+     * 읽었던 last_movement_id 가 그대로일 때만 갱신해서 여러 인스턴스가 동시에 실행해도 두 번 더하지 않음
+     */
+    @Scheduled(fixedDelayString = "${jpashop.stock.ledger.snapshot-interval-ms:600000}")
+    public void snapshot() {
+        snapshot(null);
+    }
+
+    /**
+     * 상품 하나의 스냅샷만 갱신 (itemId 가 null 이면 전체)
+     */
+    public void snapshot(Long itemId) {
+        if (!enabled) {
+            return;
+        }
+        Timestamp settled = Timestamp.valueOf(LocalDateTime.now().minus(snapshotSettle));
+        Long watermark = itemId == null
+                ? jdbcTemplate.queryForObject(
+                        "select max(stock_movement_id) from stock_movement where created_at < ?", Long.class, settled)
+                : jdbcTemplate.queryForObject(
+                        "select max(stock_movement_id) from stock_movement where item_id = ? and created_at < ?", Long.class, itemId, settled);
+        if (watermark == null) {
+            return;
+        }
+
+        String sql = "select m.item_id, sum(m.delta), s.last_movement_id from stock_movement m" +
+                " left join stock_snapshot s on s.item_id = m.item_id" +
+                " where m.stock_movement_id > coalesce(s.last_movement_id, 0) and m.stock_movement_id <= ?" +
+                (itemId != null ? " and m.item_id = ?" : "") +
+                " group by m.item_id, s.last_movement_id";
+        Object[] args = itemId != null ? new Object[]{watermark, itemId} : new Object[]{watermark};
+        List<Object[]> sums = jdbcTemplate.query(sql,
+                (rs, rowNum) -> new Object[]{rs.getLong(1), rs.getLong(2), rs.getObject(3) != null ? rs.getLong(3) : null},
+                args);
+        if (sums.isEmpty()) {
+            return;
+        }
+
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        List<Object[]> updates = new ArrayList<>(sums.size());
+        for (Object[] sum : sums) {
+            if (sum[2] != null) {
+                updates.add(new Object[]{sum[1], watermark, now, sum[0], sum[2]});
+            } else {
+                insertSnapshot((Long) sum[0], (Long) sum[1], watermark, now);
+            }
+        }
+        if (!updates.isEmpty()) {
+            jdbcTemplate.batchUpdate(
+                    "update stock_snapshot set quantity = quantity + ?, last_movement_id = ?, created_at = ?" +
+                            " where item_id = ? and last_movement_id = ?", updates);
+        }
+        log.info("재고 스냅샷 갱신 items={} lastMovementId={}", sums.size(), watermark);
+    }
+}
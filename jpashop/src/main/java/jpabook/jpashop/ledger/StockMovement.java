@@ -0,0 +1,48 @@
+package jpabook.jpashop.ledger;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.EnumType;
+import javax.persistence.Enumerated;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.Table;
+import java.time.LocalDateTime;
+
+/**
+ * 재고 변동 원장 (추가만 함, 수정/삭제 없음)
+ * 테이블 생성용 매핑이고 읽고 쓰는 것은 StockLedger 가 JDBC 로 처리
+ * 상품 등록 전에 기록될 수 있어서(flush 전) item 외래 키는 두지 않음
+ */
+@Entity
+@Table(name = "stock_movement", indexes = @Index(name = "idx_stock_movement_item", columnList = "item_id, stock_movement_id"))
+@Getter
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+public class StockMovement {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "stock_movement_id")
+    private Long id;
+
+    @Column(name = "item_id", nullable = false)
+    private Long itemId;
+
+    private int delta;
+
+    @Enumerated(EnumType.STRING)
+    @Column(length = 10, nullable = false)
+    private StockMovementReason reason;
+
+    @Column(name = "order_id")
+    private Long orderId;
+
+    @Column(nullable = false)
+    private LocalDateTime createdAt;
+}
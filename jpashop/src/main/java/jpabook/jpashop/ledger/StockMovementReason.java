@@ -0,0 +1,6 @@
+package jpabook.jpashop.ledger;
+
+public enum StockMovementReason {
+    INIT, // 상품 등록시 초기 재고
+    ORDER, CANCEL, ADJUST // 관리자 수정
+}
@@ -0,0 +1,163 @@
+package jpabook.jpashop.ledger;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import jpabook.jpashop.service.StockReservationEngine;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 원장 대사 - 상품마다 "스냅샷 + 이후 원장" 과 item.stock_quantity 가 같은지 확인
+ *
+ * 상품 id 범위를 나눠서 parallelism 개 스레드로 동시에 확인 (범위마다 쿼리 한 번)
+ * 한 쿼리 안에서 재고와 원장을 같이 읽으므로 재고와 원장을 같이 커밋하는 주문이 진행 중이어도 어긋나지 않음
+ * 재고 예약 엔진을 켜면 아직 DB 에 반영 안 된 변경량을 더해서 비교
+ * 불일치는 한 번 더 확인해서 남은 것만 보고 (jpashop.stock.ledger.mismatches 게이지)
+ */
+@Slf4j
+@Component
+public class StockReconciler {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final StockLedger stockLedger;
+    private final StockReservationEngine stockReservationEngine;
+    private final int parallelism;
+    private final int rangeSize;
+    private final AtomicLong lastMismatches;
+
+    public StockReconciler(JdbcTemplate jdbcTemplate,
+                           StockLedger stockLedger,
+                           StockReservationEngine stockReservationEngine,
+                           MeterRegistry meterRegistry,
+                           @Value("${jpashop.stock.ledger.reconcile.parallelism:4}") int parallelism,
+                           @Value("${jpashop.stock.ledger.reconcile.range-size:10000}") int rangeSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.stockLedger = stockLedger;
+        this.stockReservationEngine = stockReservationEngine;
+        this.parallelism = Math.max(1, parallelism);
+        this.rangeSize = Math.max(1, rangeSize);
+        this.lastMismatches = meterRegistry.gauge("jpashop.stock.ledger.mismatches", new AtomicLong());
+    }
+
+    @Scheduled(cron = "${jpashop.stock.ledger.reconcile.cron:-}")
+    public void scheduledReconcile() {
+        reconcile();
+    }
+
+    public Result reconcile() {
+        if (!stockLedger.isEnabled()) {
+            return new Result(0, List.of());
+        }
+        Map<String, Object> bounds = jdbcTemplate.queryForMap("select min(item_id) min_id, max(item_id) max_id from item");
+        if (bounds.get("min_id") == null) {
+            return new Result(0, List.of());
+        }
+        long minId = ((Number) bounds.get("min_id")).longValue();
+        long maxId = ((Number) bounds.get("max_id")).longValue();
+
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism, runnable -> {
+            Thread thread = new Thread(runnable, "stock-reconciler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            List<Future<RangeResult>> futures = new ArrayList<>();
+            for (long from = minId; from <= maxId; from += rangeSize) {
+                long to = Math.min(maxId, from + rangeSize - 1);
+                long rangeFrom = from;
+                futures.add(executor.submit(() -> check(rangeFrom, to)));
+            }
+
+            long checked = 0;
+            List<Mismatch> suspects = new ArrayList<>();
+            for (Future<RangeResult> future : futures) {
+                RangeResult range = future.get();
+                checked += range.checked;
+                suspects.addAll(range.mismatches);
+            }
+
+            // 엔진 반영 직후 등 잠깐 어긋난 것일 수 있으므로 한 번 더 확인
+            List<Mismatch> mismatches = new ArrayList<>();
+            for (Mismatch suspect : suspects) {
+                mismatches.addAll(check(suspect.getItemId(), suspect.getItemId()).mismatches);
+            }
+
+            lastMismatches.set(mismatches.size());
+            if (mismatches.isEmpty()) {
+                log.info("재고 원장 대사 완료 items={}", checked);
+            } else {
+                log.warn("재고 원장 불일치 items={} mismatches={}", checked, mismatches);
+            }
+            return new Result(checked, mismatches);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("재고 원장 대사 중 인터럽트", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("재고 원장 대사 실패", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private RangeResult check(long fromId, long toId) {
+        RangeResult result = new RangeResult();
+        jdbcTemplate.query(
+                "select i.item_id, i.stock_quantity, coalesce(s.quantity, 0)" +
+                        " + coalesce((select sum(m.delta) from stock_movement m" +
+                        "   where m.item_id = i.item_id and m.stock_movement_id > coalesce(s.last_movement_id, 0)), 0)" +
+                        " from item i left join stock_snapshot s on s.item_id = i.item_id" +
+                        " where i.item_id between ? and ?",
+                rs -> {
+                    long itemId = rs.getLong(1);
+                    long stock = rs.getLong(2);
+                    if (stockReservationEngine.isEnabled()) {
+                        stock += stockReservationEngine.getPendingDelta(itemId);
+                    }
+                    long ledger = rs.getLong(3);
+                    result.checked++;
+                    if (stock != ledger) {
+                        result.mismatches.add(new Mismatch(itemId, stock, ledger));
+                    }
+                },
+                fromId, toId);
+        return result;
+    }
+
+    private static class RangeResult {
+        private long checked;
+        private final List<Mismatch> mismatches = new ArrayList<>();
+    }
+
+    @Getter
+    @RequiredArgsConstructor
+    public static class Result {
+        private final long checked;
+        private final List<Mismatch> mismatches;
+    }
+
+    @Getter
+    @RequiredArgsConstructor
+    public static class Mismatch {
+        private final long itemId;
+        private final long stockQuantity;
+        private final long ledgerQuantity;
+
+        @Override
+        public String toString() {
+            return itemId + "(stock=" + stockQuantity + ", ledger=" + ledgerQuantity + ")";
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package jpabook.jpashop.ledger;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+import java.time.LocalDateTime;
+
+/**
+ * 상품별 재고 스냅샷 - last_movement_id 까지의 원장 합계
+ * 현재 재고 = quantity + 이후 원장 합계
+ */
+@Entity
+@Table(name = "stock_snapshot")
+@Getter
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+public class StockSnapshot {
+
+    @Id
+    @Column(name = "item_id")
+    private Long itemId;
+
+    private long quantity;
+
+    @Column(name = "last_movement_id", nullable = false)
+    private Long lastMovementId;
+
+    @Column(nullable = false)
+    private LocalDateTime createdAt;
+}
@@ -0,0 +1,75 @@
+package jpabook.jpashop.monitoring;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * 한 요청(또는 테스트) 동안 실행된 SQL 집계
+ * 파라미터만 다른 같은 모양의 SQL 은 하나로 묶어서 실행 횟수를 셈
+ * 같은 모양이 여러 번 실행됐으면 지연 로딩이 반복된 것(N+1)으로 의심할 수 있음
+ * 집계는 중첩될 수 있음 (예: @QueryBudget 테스트 안에서 MockMvc 요청의 QueryCountFilter)
+ * 안쪽 집계에 기록된 SQL 은 바깥 집계에도 기록됨
+ */
+public class QueryCount {
+
+    // in (?, ?, ?) 처럼 개수만 다른 IN 절은 같은 모양으로 취급
+    private static final Pattern IN_LIST = Pattern.compile("(?i)in\\s*\\(\\s*\\?(\\s*,\\s*\\?)*\\s*\\)");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    private int total;
+    private long elapsedNanos;
+    private final Map<String, Integer> shapes = new LinkedHashMap<>();
+    private final QueryCount parent;
+
+    public QueryCount() {
+        this(null);
+    }
+
+    QueryCount(QueryCount parent) {
+        this.parent = parent;
+    }
+
+    void record(String sql, long nanos) {
+        total++;
+        elapsedNanos += nanos;
+        if (sql != null) {
+            shapes.merge(shapeOf(sql), 1, Integer::sum);
+        }
+        if (parent != null) {
+            parent.record(sql, nanos);
+        }
+    }
+
+    QueryCount getParent() {
+        return parent;
+    }
+
+    public int getTotal() {
+        return total;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedNanos / 1_000_000;
+    }
+
+    public Map<String, Integer> getShapes() {
+        return shapes;
+    }
+
+    // threshold 번 이상 실행된 SQL 모양 (N+1 의심)
+    public Map<String, Integer> getRepeatedShapes(int threshold) {
+        Map<String, Integer> repeated = new LinkedHashMap<>();
+        shapes.forEach((shape, count) -> {
+            if (count >= threshold) {
+                repeated.put(shape, count);
+            }
+        });
+        return repeated;
+    }
+
+    static String shapeOf(String sql) {
+        String shape = WHITESPACE.matcher(sql.trim()).replaceAll(" ");
+        return IN_LIST.matcher(shape).replaceAll("in (?)");
+    }
+}
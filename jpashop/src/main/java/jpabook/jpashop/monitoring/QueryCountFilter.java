@@ -0,0 +1,101 @@
+package jpabook.jpashop.monitoring;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 요청 단위 SQL 집계
+ * - 운영 : 요청별 SQL 수/시간, N+1 의심 건수를 메트릭으로 기록
+ * - 개발 : jpashop.query-count.headers=true 이면 응답 헤더로도 내려줌
+ *         (헤더는 본문보다 먼저 나가야 해서 응답을 버퍼링하므로 운영에서는 끔, application-dev.yml)
+ *         비동기 응답(StreamingResponseBody 등)과 본문이 max-buffer-size 를 넘는 응답은
+ *         버퍼링을 멈추고 바로 내보내므로 헤더 없이 메트릭만 기록
+ */
+@Slf4j
+@Component
+public class QueryCountFilter extends OncePerRequestFilter {
+
+    public static final String QUERY_COUNT_HEADER = "X-Query-Count";
+    public static final String QUERY_TIME_HEADER = "X-Query-Time-Ms";
+    public static final String QUERY_REPEATED_HEADER = "X-Query-Repeated";
+
+    private final MeterRegistry meterRegistry;
+    private final boolean exposeHeaders;
+    private final int nPlusOneThreshold;
+    private final int maxBufferSize;
+
+    public QueryCountFilter(MeterRegistry meterRegistry,
+                            @Value("${jpashop.query-count.headers:false}") boolean exposeHeaders,
+                            @Value("${jpashop.query-count.n-plus-one-threshold:3}") int nPlusOneThreshold,
+                            @Value("${jpashop.query-count.max-buffer-size:1048576}") int maxBufferSize) {
+        this.meterRegistry = meterRegistry;
+        this.exposeHeaders = exposeHeaders;
+        this.nPlusOneThreshold = nPlusOneThreshold;
+        this.maxBufferSize = maxBufferSize;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain) throws ServletException, IOException {
+        QueryCount queryCount = QueryCountHolder.start();
+        QueryCountResponseWrapper wrapper = exposeHeaders ? new QueryCountResponseWrapper(response, maxBufferSize) : null;
+        try {
+            filterChain.doFilter(request, wrapper != null ? wrapper : response);
+        } finally {
+            QueryCountHolder.stop();
+            Map<String, Integer> repeated = queryCount.getRepeatedShapes(nPlusOneThreshold);
+            record(uriOf(request), queryCount, repeated);
+
+            if (wrapper != null) {
+                if (request.isAsyncStarted()) {
+                    // 본문은 다른 스레드가 나중에 씀
+                    wrapper.passThrough();
+                } else {
+                    wrapper.complete(
+                            QUERY_COUNT_HEADER, String.valueOf(queryCount.getTotal()),
+                            QUERY_TIME_HEADER, String.valueOf(queryCount.getElapsedMillis()),
+                            QUERY_REPEATED_HEADER, String.valueOf(repeated.size()));
+                }
+            }
+        }
+    }
+
+    private void record(String uri, QueryCount queryCount, Map<String, Integer> repeated) {
+        DistributionSummary.builder("jpashop.sql.statements")
+                .tag("uri", uri)
+                .register(meterRegistry)
+                .record(queryCount.getTotal());
+        Timer.builder("jpashop.sql.time")
+                .tag("uri", uri)
+                .register(meterRegistry)
+                .record(queryCount.getElapsedMillis(), TimeUnit.MILLISECONDS);
+
+        if (!repeated.isEmpty()) {
+            Counter.builder("jpashop.sql.n_plus_one")
+                    .tag("uri", uri)
+                    .register(meterRegistry)
+                    .increment();
+            repeated.forEach((shape, count) -> log.warn("N+1 의심 uri={} count={} sql={}", uri, count, shape));
+        }
+    }
+
+    // 경로 변수 때문에 태그가 늘어나지 않도록 매핑된 패턴(/api/v2/members/{id})을 사용
+    private static String uriOf(HttpServletRequest request) {
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        return pattern != null ? pattern.toString() : "UNKNOWN";
+    }
+}
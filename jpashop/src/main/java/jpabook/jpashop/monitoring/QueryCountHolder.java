@@ -0,0 +1,38 @@
+package jpabook.jpashop.monitoring;
+
+/**
+ * 현재 스레드의 SQL 집계
+ * start ~ stop 사이에 이 스레드에서 실행된 SQL 만 QueryCountListener 가 기록함
+ * start 는 진행 중인 집계 안에 새 집계를 쌓고 stop 은 바깥 집계를 되돌려 놓음
+ * (필터의 start/stop 이 테스트의 집계를 지우지 않도록)
+ */
+public abstract class QueryCountHolder {
+
+    private static final ThreadLocal<QueryCount> HOLDER = new ThreadLocal<>();
+
+    public static QueryCount start() {
+        QueryCount queryCount = new QueryCount(HOLDER.get());
+        HOLDER.set(queryCount);
+        return queryCount;
+    }
+
+    public static QueryCount get() {
+        return HOLDER.get();
+    }
+
+    /**
+     * @return 끝낸 집계, 진행 중인 집계가 없으면 null
+     */
+    public static QueryCount stop() {
+        QueryCount queryCount = HOLDER.get();
+        if (queryCount == null) {
+            return null;
+        }
+        if (queryCount.getParent() != null) {
+            HOLDER.set(queryCount.getParent());
+        } else {
+            HOLDER.remove();
+        }
+        return queryCount;
+    }
+}
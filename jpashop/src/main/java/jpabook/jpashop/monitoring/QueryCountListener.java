@@ -0,0 +1,24 @@
+package jpabook.jpashop.monitoring;
+
+import com.p6spy.engine.common.StatementInformation;
+import com.p6spy.engine.event.SimpleJdbcEventListener;
+import org.springframework.stereotype.Component;
+
+import java.sql.SQLException;
+
+/**
+ * p6spy 가 감싼 DataSource 에서 실행되는 모든 SQL 을 현재 스레드의 QueryCount 에 기록
+ * JdbcEventListener 빈은 p6spy-spring-boot-starter 가 자동으로 등록함
+ * batch 는 executeBatch 한 번을 SQL 한 번으로 셈
+ */
+@Component
+public class QueryCountListener extends SimpleJdbcEventListener {
+
+    @Override
+    public void onAfterAnyExecute(StatementInformation statementInformation, long timeElapsedNanos, SQLException e) {
+        QueryCount queryCount = QueryCountHolder.get();
+        if (queryCount != null) {
+            queryCount.record(statementInformation.getSql(), timeElapsedNanos);
+        }
+    }
+}
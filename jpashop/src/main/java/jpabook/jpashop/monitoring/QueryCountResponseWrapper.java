@@ -0,0 +1,185 @@
+package jpabook.jpashop.monitoring;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+
+/**
+ * 쿼리 수 헤더를 붙이기 위해 응답 본문을 버퍼링
+ * 본문이 maxBufferSize 를 넘거나 비동기(StreamingResponseBody 등) 응답이면
+ * 버퍼를 내보내고 그 뒤로는 원래 응답에 바로 씀 (헤더 없음)
+ * 버퍼링 중의 flush 는 무시 (메시지 컨버터가 본문을 쓰고 항상 flush 하므로)
+ * 비동기 응답은 다른 스레드가 쓰기 때문에 버퍼와 전환은 동기화
+ */
+class QueryCountResponseWrapper extends HttpServletResponseWrapper {
+
+    private final int maxBufferSize;
+    private final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+    private final ServletOutputStream outputStream = new BufferingOutputStream();
+    private volatile PrintWriter writer;
+    private boolean passThrough;
+    private Long contentLength;
+
+    QueryCountResponseWrapper(HttpServletResponse response, int maxBufferSize) {
+        super(response);
+        this.maxBufferSize = maxBufferSize;
+    }
+
+    /**
+     * 아직 버퍼링 중이면 헤더를 붙이고 본문을 내보냄
+     * @return 헤더를 붙였으면 true
+     */
+    boolean complete(String... headers) throws IOException {
+        flushWriter();
+        synchronized (this) {
+            if (passThrough) {
+                return false;
+            }
+            for (int i = 0; i < headers.length; i += 2) {
+                super.setHeader(headers[i], headers[i + 1]);
+            }
+            switchOver();
+            return true;
+        }
+    }
+
+    /**
+     * 버퍼를 내보내고 이후 쓰기는 원래 응답으로
+     */
+    void passThrough() throws IOException {
+        flushWriter();
+        synchronized (this) {
+            switchOver();
+        }
+    }
+
+    // writer 에 남은 문자를 버퍼(또는 원래 응답)로 내림
+    // writer 는 쓰는 동안 자기 락을 잡고 이 객체의 락을 잡으므로 이 객체의 락 밖에서 호출
+    private void flushWriter() {
+        if (writer != null) {
+            writer.flush();
+        }
+    }
+
+    private void switchOver() throws IOException {
+        if (passThrough) {
+            return;
+        }
+        passThrough = true;
+        if (contentLength != null) {
+            super.setContentLengthLong(contentLength);
+        }
+        if (buffer.size() > 0) {
+            buffer.writeTo(getResponse().getOutputStream());
+            buffer.reset();
+        }
+    }
+
+    @Override
+    public ServletOutputStream getOutputStream() {
+        return outputStream;
+    }
+
+    @Override
+    public synchronized PrintWriter getWriter() throws IOException {
+        if (writer == null) {
+            writer = new PrintWriter(new OutputStreamWriter(outputStream, getCharacterEncoding()));
+        }
+        return writer;
+    }
+
+    @Override
+    public void flushBuffer() throws IOException {
+        flushWriter();
+        synchronized (this) {
+            if (passThrough) {
+                super.flushBuffer();
+            }
+        }
+    }
+
+    @Override
+    public synchronized void resetBuffer() {
+        if (!passThrough) {
+            buffer.reset();
+        }
+        super.resetBuffer();
+    }
+
+    @Override
+    public synchronized void reset() {
+        if (!passThrough) {
+            buffer.reset();
+            contentLength = null;
+        }
+        super.reset();
+    }
+
+    // 버퍼링 중에는 본문 길이가 확정되지 않았으므로 내보낼 때 설정
+    @Override
+    public synchronized void setContentLength(int len) {
+        setContentLengthLong(len);
+    }
+
+    @Override
+    public synchronized void setContentLengthLong(long len) {
+        if (passThrough) {
+            super.setContentLengthLong(len);
+        } else {
+            contentLength = len;
+        }
+    }
+
+    private class BufferingOutputStream extends ServletOutputStream {
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            synchronized (QueryCountResponseWrapper.this) {
+                if (!passThrough && buffer.size() + len > maxBufferSize) {
+                    switchOver();
+                }
+                if (passThrough) {
+                    getResponse().getOutputStream().write(b, off, len);
+                } else {
+                    buffer.write(b, off, len);
+                }
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            synchronized (QueryCountResponseWrapper.this) {
+                if (passThrough) {
+                    getResponse().getOutputStream().flush();
+                }
+            }
+        }
+
+        @Override
+        public boolean isReady() {
+            return true;
+        }
+
+        @Override
+        public void setWriteListener(WriteListener writeListener) {
+            // 논블로킹 쓰기는 버퍼링하지 않음
+            try {
+                passThrough();
+                getResponse().getOutputStream().setWriteListener(writeListener);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+}
@@ -5,6 +5,7 @@ import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Repository;
 
 import javax.persistence.EntityManager;
+import java.util.Collection;
 import java.util.List;
 
 @Repository
@@ -24,6 +25,13 @@ public class ItemRepository {
         return em.find(Item.class, id);
     }
 
+    // 여러 상품을 in 쿼리 한 번으로 조회 (id 오름차순)
+    public List<Item> findAllById(Collection<Long> ids){
+        return em.createQuery("select i from Item i where i.id in :ids order by i.id", Item.class)
+                .setParameter("ids", ids)
+                .getResultList();
+    }
+
     public List<Item> findAll(){
         return em.createQuery("select i from Item i", Item.class).getResultList();
     }
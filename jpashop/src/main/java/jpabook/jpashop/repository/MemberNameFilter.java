@@ -0,0 +1,105 @@
+package jpabook.jpashop.repository;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import javax.persistence.EntityManager;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 회원 이름 블룸 필터
+ *
+ * 가입할 때마다 같은 이름이 있는지 DB 를 조회하지 않도록 지금까지 사용된 이름을 비트 배열에 기록
+ * mightContain 이 false 면 DB 에 그 이름이 확실히 없으므로 조회를 생략할 수 있음
+ * (true 는 "있을 수도 있음" - 오탐률 false-positive-probability)
+ *
+ * 필터가 틀리더라도 member.name 유니크 제약이 중복을 막기 때문에 정합성에는 영향 없음
+ * 시작할 때 DB 의 이름으로 채우기 전까지는 항상 true (DB 조회)
+ */
+@Slf4j
+@Component
+public class MemberNameFilter {
+
+    private final EntityManager em;
+    private final AtomicLongArray bits;
+    private final long bitSize;
+    private final int hashCount;
+    private volatile boolean ready;
+
+    public MemberNameFilter(EntityManager em,
+                            @Value("${jpashop.member.name-filter.expected-insertions:1000000}") long expectedInsertions,
+                            @Value("${jpashop.member.name-filter.false-positive-probability:0.01}") double falsePositiveProbability) {
+        this.em = em;
+        // m = -n ln(p) / (ln 2)^2, k = m / n * ln 2
+        long size = (long) Math.ceil(-expectedInsertions * Math.log(falsePositiveProbability) / (Math.log(2) * Math.log(2)));
+        this.bitSize = Math.max(64, size);
+        this.hashCount = Math.max(1, (int) Math.round((double) bitSize / expectedInsertions * Math.log(2)));
+        this.bits = new AtomicLongArray((int) ((bitSize + 63) / 64));
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        em.createQuery("select m.name from Member m", String.class)
+                .getResultStream()
+                .forEach(this::put);
+        ready = true;
+        log.info("회원 이름 필터 초기화 완료 bits={} hashes={}", bitSize, hashCount);
+    }
+
+    public void put(String name) {
+        if (name == null) {
+            return;
+        }
+        long hash = hash64(name);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 1; i <= hashCount; i++) {
+            long index = indexOf(h1 + i * h2);
+            int word = (int) (index >>> 6);
+            long mask = 1L << index;
+            long current;
+            do {
+                current = bits.get(word);
+                if ((current & mask) != 0) {
+                    break;
+                }
+            } while (!bits.compareAndSet(word, current, current | mask));
+        }
+    }
+
+    public boolean mightContain(String name) {
+        if (!ready || name == null) {
+            return true;
+        }
+        long hash = hash64(name);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 1; i <= hashCount; i++) {
+            long index = indexOf(h1 + i * h2);
+            if ((bits.get((int) (index >>> 6)) & (1L << index)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private long indexOf(int combinedHash) {
+        return (combinedHash & Integer.MAX_VALUE) % bitSize;
+    }
+
+    // FNV-1a 64bit + 마지막에 비트를 섞어서 상위/하위 32bit 를 두 개의 해시로 사용
+    private static long hash64(String value) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            hash ^= value.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
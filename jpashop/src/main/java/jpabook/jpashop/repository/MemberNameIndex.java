@@ -0,0 +1,164 @@
+package jpabook.jpashop.repository;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.persistence.EntityManager;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * 회원 이름 trigram(3글자) 색인
+ *
+ * like '%name%' 은 인덱스를 쓸 수 없어서 주문 검색마다 회원 전체를 훑음
+ * 이름을 3글자 조각으로 나눠서 조각 -> 회원 id 목록을 메모리에 두고
+ * 검색어의 조각들이 모두 들어있는 회원만 후보로 뽑은 뒤 실제 이름으로 한 번 더 확인
+ * 주문 검색은 member_id in (후보) 로 바뀌어서 회원 수와 상관없이 빠름
+ *
+ * - 시작할 때 DB 에서 채우고, 가입/이름 변경은 커밋 후 반영 (MemberService)
+ * - 검색어가 3글자 미만이거나 후보가 너무 많으면 null 을 반환하고 기존 like 검색 사용
+ * - 인스턴스별 메모리 색인이라 다른 인스턴스에서 바뀐 이름은 재시작 전까지 반영 안됨
+ *   색인에 없는 회원은 like 로 돌아가지 않고 검색 결과에서 빠지므로,
+ *   회원을 가입/변경하는 인스턴스가 둘 이상이면 jpashop.member.name-index.enabled=false 로 꺼야 함
+ */
+@Slf4j
+@Component
+public class MemberNameIndex {
+
+    private static final int GRAM = 3;
+
+    private final EntityManager em;
+    private final boolean enabled;
+    private final int maxCandidates;
+
+    private final Map<String, Set<Long>> postings = new ConcurrentHashMap<>();
+    private final Map<Long, String> names = new ConcurrentHashMap<>();
+    private volatile boolean ready;
+
+    public MemberNameIndex(EntityManager em,
+                           @Value("${jpashop.member.name-index.enabled:true}") boolean enabled,
+                           @Value("${jpashop.member.name-index.max-candidates:1000}") int maxCandidates) {
+        this.em = em;
+        this.enabled = enabled;
+        this.maxCandidates = maxCandidates;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        if (!enabled) {
+            return;
+        }
+        List<Object[]> rows = em.createQuery("select m.id, m.name from Member m", Object[].class)
+                .getResultList();
+        for (Object[] row : rows) {
+            addIfAbsent((Long) row[0], (String) row[1]);
+        }
+        ready = true;
+        log.info("회원 이름 색인 완료 members={} grams={}", names.size(), postings.size());
+    }
+
+    /**
+     * 가입/이름 변경 반영 (트랜잭션 안이면 커밋 후)
+     */
+    public void update(Long memberId, String name) {
+        if (!enabled) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            apply(memberId, name);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                apply(memberId, name);
+            }
+        });
+    }
+
+    /**
+     * 이름에 keyword 가 포함된 회원 id
+     * 색인을 쓸 수 없으면 null (호출하는 쪽에서 like 검색)
+     */
+    public Set<Long> findMemberIds(String keyword) {
+        if (!ready || keyword.length() < GRAM) {
+            return null;
+        }
+
+        List<Set<Long>> lists = gramsOf(keyword).stream()
+                .map(gram -> postings.getOrDefault(gram, Set.of()))
+                .sorted(Comparator.comparingInt(Set::size))
+                .collect(Collectors.toList());
+
+        // 가장 짧은 목록부터 교집합, 마지막으로 실제 이름에 keyword 가 들어있는지 확인
+        Set<Long> result = new HashSet<>();
+        for (Long memberId : lists.get(0)) {
+            if (containsAll(lists, memberId)) {
+                String name = names.get(memberId);
+                if (name != null && name.contains(keyword)) {
+                    result.add(memberId);
+                    if (result.size() > maxCandidates) {
+                        return null;
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    private static boolean containsAll(List<Set<Long>> lists, Long memberId) {
+        for (int i = 1; i < lists.size(); i++) {
+            if (!lists.get(i).contains(memberId)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private synchronized void apply(Long memberId, String name) {
+        String old = name != null ? names.put(memberId, name) : names.remove(memberId);
+        if (old != null) {
+            for (String gram : gramsOf(old)) {
+                Set<Long> ids = postings.get(gram);
+                if (ids != null) {
+                    ids.remove(memberId);
+                }
+            }
+        }
+        if (name != null) {
+            addPostings(memberId, name);
+        }
+    }
+
+    // 초기화 중에 가입/변경된 회원은 이미 최신 이름으로 들어가 있음
+    private synchronized void addIfAbsent(Long memberId, String name) {
+        if (name != null && names.putIfAbsent(memberId, name) == null) {
+            addPostings(memberId, name);
+        }
+    }
+
+    private void addPostings(Long memberId, String name) {
+        for (String gram : gramsOf(name)) {
+            postings.computeIfAbsent(gram, g -> ConcurrentHashMap.newKeySet()).add(memberId);
+        }
+    }
+
+    private static Set<String> gramsOf(String text) {
+        String normalized = text.toLowerCase();
+        Set<String> grams = new HashSet<>();
+        for (int i = 0; i + GRAM <= normalized.length(); i++) {
+            grams.add(normalized.substring(i, i + GRAM));
+        }
+        return grams;
+    }
+}
@@ -17,6 +17,10 @@ public class MemberRepository {
         em.persist(member);
     }
 
+    public void flush(){
+        em.flush();
+    }
+
     public Member findOne(Long id){
         return em.find(Member.class, id);
     }
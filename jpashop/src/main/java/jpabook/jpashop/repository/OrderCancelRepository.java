@@ -0,0 +1,130 @@
+package jpabook.jpashop.repository;
+
+import jpabook.jpashop.domain.DeliveryStatus;
+import jpabook.jpashop.domain.OrderStatus;
+import jpabook.jpashop.domain.item.Item;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * 주문 일괄 취소 - 주문/상품 엔티티를 로딩하지 않고 SQL 로 상태와 재고를 바꿈
+ * 영속성 컨텍스트를 거치지 않기 때문에 호출하는 쪽에서 flush/clear 와 2차 캐시 무효화를 해야 함
+ */
+@Repository
+@RequiredArgsConstructor
+public class OrderCancelRepository {
+
+    private final EntityManager em;
+    private final JdbcTemplate jdbcTemplate;
+
+    public void flush() {
+        em.flush();
+    }
+
+    // SQL 로 바꾼 주문/상품이 영속성 컨텍스트에 이전 값으로 남지 않게 비움
+    public void clear() {
+        em.clear();
+    }
+
+    /**
+     * 재고를 바꾼 상품을 커밋 후 2차 캐시에서 제거 (트랜잭션 밖이면 바로)
+     */
+    public void evictItems(Collection<Long> itemIds) {
+        Runnable evict = () -> itemIds.forEach(itemId -> em.getEntityManagerFactory().getCache().evict(Item.class, itemId));
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            evict.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                evict.run();
+            }
+        });
+    }
+
+    /**
+     * 주문 상태를 CANCEL 로 변경 (주문 id 오름차순 JDBC batch)
+     * 주문 상태이고 배송 완료 전인 주문만 바뀌므로 동시에 취소해도 한 번만 취소됨
+     * version 을 올려서 엔티티로 같은 주문을 수정하던 트랜잭션은 낙관적 락 충돌로 실패함
+     *
+     * @return 실제로 취소된 주문 id
+     */
+    public List<Long> cancel(List<Long> sortedOrderIds) {
+        List<Object[]> batchArgs = new ArrayList<>(sortedOrderIds.size());
+        for (Long orderId : sortedOrderIds) {
+            batchArgs.add(new Object[]{OrderStatus.CANCEL.name(), orderId, OrderStatus.ORDER.name(), DeliveryStatus.COMP.name()});
+        }
+        int[] counts = jdbcTemplate.batchUpdate(
+                "update orders set status = ?, version = version + 1" +
+                        " where order_id = ? and status = ?" +
+                        " and not exists (select 1 from delivery d where d.delivery_id = orders.delivery_id and d.status = ?)",
+                batchArgs);
+
+        List<Long> canceled = new ArrayList<>(counts.length);
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] > 0) {
+                canceled.add(sortedOrderIds.get(i));
+            }
+        }
+        return canceled;
+    }
+
+    /**
+     * 주문들의 주문상품 수량 {주문 id, 상품 id, 수량} (엔티티를 로딩하지 않음)
+     */
+    public List<Object[]> findOrderItemCounts(Collection<Long> orderIds) {
+        return em.createQuery(
+                        "select oi.order.id, oi.item.id, oi.count from OrderItem oi" +
+                                " where oi.order.id in :orderIds", Object[].class)
+                .setParameter("orderIds", orderIds)
+                .getResultList();
+    }
+
+    /**
+     * 재고 복구 - 상품 수만큼의 UPDATE 대신 case 문 하나로 실행
+     */
+    public int restoreStock(SortedMap<Long, Long> countByItem) {
+        if (countByItem.isEmpty()) {
+            return 0;
+        }
+        StringBuilder sql = new StringBuilder("update item set stock_quantity = stock_quantity + case item_id");
+        List<Object> args = new ArrayList<>(countByItem.size() * 3);
+        for (Map.Entry<Long, Long> entry : countByItem.entrySet()) {
+            sql.append(" when ? then ?");
+            args.add(entry.getKey());
+            args.add(entry.getValue());
+        }
+        sql.append(" else 0 end, version = version + 1 where item_id in (")
+                .append(String.join(", ", Collections.nCopies(countByItem.size(), "?")))
+                .append(")");
+        args.addAll(countByItem.keySet());
+        return jdbcTemplate.update(sql.toString(), args.toArray());
+    }
+
+    /**
+     * 취소되지 않은 주문의 현재 상태 (주문 id -> {주문 상태, 배송 상태}), 없는 주문은 빠짐
+     */
+    public Map<Long, Object[]> findStatuses(Collection<Long> orderIds) {
+        Map<Long, Object[]> result = new TreeMap<>();
+        em.createQuery(
+                        "select o.id, o.status, d.status from Order o join o.delivery d" +
+                                " where o.id in :orderIds", Object[].class)
+                .setParameter("orderIds", orderIds)
+                .getResultList()
+                .forEach(row -> result.put((Long) row[0], new Object[]{row[1], row[2]}));
+        return result;
+    }
+}
@@ -0,0 +1,70 @@
+package jpabook.jpashop.repository;
+
+import lombok.Getter;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+
+/**
+ * 키셋(커서) 페이징 위치
+ * 마지막으로 내려준 주문의 정렬 키를 담아서 다음 페이지는 offset 없이 where 조건으로 바로 찾아감
+ * 클라이언트에게는 불투명한 토큰(encode)으로만 전달
+ */
+@Getter
+public class OrderCursor {
+
+    public enum Sort {
+        ID,         // order_id 오름차순
+        ORDER_DATE  // 주문시간 내림차순 (최신순), 같은 시간은 order_id 내림차순, 주문시간이 없는 주문은 마지막
+    }
+
+    private final Sort sort;
+    private final Long orderId;
+    private final LocalDateTime orderDate;
+
+    private OrderCursor(Sort sort, Long orderId, LocalDateTime orderDate) {
+        this.sort = sort;
+        this.orderId = orderId;
+        this.orderDate = orderDate;
+    }
+
+    // 첫 페이지
+    public static OrderCursor first(Sort sort) {
+        return new OrderCursor(sort, null, null);
+    }
+
+    public static OrderCursor after(Sort sort, Long orderId, LocalDateTime orderDate) {
+        return new OrderCursor(sort, orderId, orderDate);
+    }
+
+    public boolean isFirst() {
+        return orderId == null;
+    }
+
+    public String encode() {
+        String raw = sort == Sort.ID
+                ? "I:" + orderId
+                : "D:" + (orderDate == null ? "" : orderDate) + ":" + orderId;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static OrderCursor decode(String token) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            if (raw.startsWith("I:")) {
+                return after(Sort.ID, Long.valueOf(raw.substring(2)), null);
+            }
+            if (raw.startsWith("D:")) {
+                int idx = raw.lastIndexOf(':');
+                // 주문시간이 없는 주문은 "D::order_id"
+                String date = raw.substring(2, idx);
+                LocalDateTime orderDate = date.isEmpty() ? null : LocalDateTime.parse(date);
+                return after(Sort.ORDER_DATE, Long.valueOf(raw.substring(idx + 1)), orderDate);
+            }
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("잘못된 커서입니다.", e);
+        }
+        throw new IllegalArgumentException("잘못된 커서입니다.");
+    }
+}
@@ -1,21 +1,37 @@
 package jpabook.jpashop.repository;
 
 import jpabook.jpashop.domain.Order;
+import jpabook.jpashop.domain.OrderItem;
 import jpabook.jpashop.repository.order.simplequery.OrderSimpleQueryDto;
 import lombok.RequiredArgsConstructor;
+import org.hibernate.CacheMode;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.query.Query;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Repository;
 import org.springframework.util.StringUtils;
 
 import javax.persistence.EntityManager;
 import javax.persistence.TypedQuery;
-import javax.persistence.criteria.*;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
 
 @Repository
 @RequiredArgsConstructor
 public class OrderRepository {
+    // 검색 조건 조합별 JPQL
+    private static final Map<String, String> SEARCH_JPQL = new ConcurrentHashMap<>();
+
     private final EntityManager em;
+    private final MemberNameIndex memberNameIndex;
+
+    @Value("${jpashop.order.search.max-results:1000}")
+    private int maxResults = 1000;
 
     public void save(Order order){
         em.persist(order);
@@ -26,51 +42,85 @@ public class OrderRepository {
     }
 
     public List<Order> findAll(OrderSearch orderSearch){
-        CriteriaBuilder cb = em.getCriteriaBuilder();
-        CriteriaQuery<Order> cq = cb.createQuery(Order.class);
-        Root<Order> o = cq.from(Order.class);
-        Join<Object, Object> m = o.join("member", JoinType.INNER);
+        return search(orderSearch);
+    }
 
-        List<Predicate> criteria = new ArrayList<>();
+    public List<Order> findAllByString(OrderSearch orderSearch) {
+        return search(orderSearch);
+    }
 
-        // 주문 상태 검색
-        if (orderSearch.getOrderStatus() != null){
-            Predicate status = cb.equal(o.get("status"), orderSearch.getOrderStatus());
-            criteria.add(status);
+    /**
+     * 주문 검색
+     * Criteria 로 매번 쿼리를 만들면 트리 생성 + JPQL 변환 비용이 검색마다 발생함
+     * 검색 조건 조합(주문상태 유무, 회원명/회원 id 유무, 정렬)마다 JPQL 을 한 번만 만들어 두고 파라미터만 바인딩
+     * JPQL 문자열이 같으므로 하이버네이트 쿼리 플랜 캐시에서 재사용됨 (hibernate.cache.query.plan 메트릭)
+     */
+    public List<Order> search(OrderSearch orderSearch) {
+        boolean hasStatus = orderSearch.getOrderStatus() != null;
+        boolean hasName = StringUtils.hasText(orderSearch.getMemberName());
+
+        // 회원 이름은 가능하면 trigram 색인으로 회원 id 를 먼저 찾아서 member_id in (...) 로 검색
+        Set<Long> memberIds = hasName ? memberNameIndex.findMemberIds(orderSearch.getMemberName()) : null;
+        if (memberIds != null && memberIds.isEmpty()) {
+            return new ArrayList<>();
         }
+        boolean byMemberIds = memberIds != null;
 
-        if (StringUtils.hasText(orderSearch.getMemberName())){
-            Predicate name = cb.like(m.<String>get("name"), "%" + orderSearch.getMemberName() + "%");
-            criteria.add(name);
+        TypedQuery<Order> query = em.createQuery(searchJpql(hasStatus, hasName && !byMemberIds, byMemberIds, orderSearch.getSort()), Order.class);
+        if (hasStatus) {
+            query.setParameter("status", orderSearch.getOrderStatus());
         }
-
-        cq.where(cb.and(criteria.toArray(new Predicate[criteria.size()])));
-        TypedQuery<Order> query = em.createQuery(cq).setMaxResults(1000);
-        return query.getResultList();
+        if (byMemberIds) {
+            query.setParameter("memberIds", memberIds);
+        } else if (hasName) {
+            query.setParameter("name", "%" + orderSearch.getMemberName() + "%");
+        }
+        return query.setMaxResults(limitOf(orderSearch)).getResultList();
     }
 
-    public List<Order> findAllByString(OrderSearch orderSearch) {
-        CriteriaBuilder cb = em.getCriteriaBuilder();
-        CriteriaQuery<Order> cq = cb.createQuery(Order.class);
-        Root<Order> o = cq.from(Order.class);
-        Join<Object, Object> m = o.join("member", JoinType.INNER);
-
-        List<Predicate> criteria = new ArrayList<>();
+    private int limitOf(OrderSearch orderSearch) {
+        Integer limit = orderSearch.getLimit();
+        return limit == null || limit <= 0 ? maxResults : Math.min(limit, maxResults);
+    }
 
-        // 주문 상태 검색
-        if (orderSearch.getOrderStatus() != null) {
-            Predicate status = cb.equal(o.get("status"), orderSearch.getOrderStatus());
-            criteria.add(status);
-        }
+    private static String searchJpql(boolean hasStatus, boolean hasName, boolean hasMemberIds, OrderSearch.Sort sort) {
+        String key = (hasStatus ? "S" : "") + (hasName ? "N" : "") + (hasMemberIds ? "I" : "") + ":" + sort;
+        return SEARCH_JPQL.computeIfAbsent(key, k -> {
+            List<String> criteria = new ArrayList<>();
+            // 주문 상태 검색
+            if (hasStatus) {
+                criteria.add("o.status = :status");
+            }
+            // 회원 이름 검색
+            if (hasName) {
+                criteria.add("m.name like :name");
+            }
+            if (hasMemberIds) {
+                criteria.add("m.id in :memberIds");
+            }
+
+            StringBuilder jpql = new StringBuilder("select o from Order o join o.member m");
+            if (!criteria.isEmpty()) {
+                jpql.append(" where ").append(String.join(" and ", criteria));
+            }
+            if (sort != null) {
+                jpql.append(" order by ").append(orderByOf(sort));
+            }
+            return jpql.toString();
+        });
+    }
 
-        if (StringUtils.hasText(orderSearch.getMemberName())) {
-            Predicate name = cb.like(m.<String>get("name"), "%" + orderSearch.getMemberName() + "%");
-            criteria.add(name);
+    private static String orderByOf(OrderSearch.Sort sort) {
+        switch (sort) {
+            case ID_ASC:
+                return "o.id asc";
+            case ID_DESC:
+                return "o.id desc";
+            case ORDER_DATE_DESC:
+                return "o.orderDate desc, o.id desc";
+            default:
+                throw new IllegalArgumentException("지원하지 않는 정렬입니다. " + sort);
         }
-
-        cq.where(cb.and(criteria.toArray(new Predicate[criteria.size()])));
-        TypedQuery<Order> query = em.createQuery(cq).setMaxResults(1000);
-        return query.getResultList();
     }
 
     // 재사용성이 V4 보다 좋음
@@ -101,4 +151,67 @@ public class OrderRepository {
                 .setMaxResults(limit)
                 .getResultList();
     }
+
+    // 키셋 페이징 - offset 만큼 읽고 버리지 않고 마지막 키 다음부터 limit 개만 조회
+    // 몇 번째 페이지든 인덱스 탐색 한 번으로 시작 위치를 찾기 때문에 비용이 같음
+    public List<Order> findAllWithMemberDelivery(OrderCursor cursor, int limit) {
+        String jpql = "select o from Order o" +
+                " join fetch o.member m" +
+                " join fetch o.delivery d";
+
+        if (cursor.getSort() == OrderCursor.Sort.ID) {
+            if (!cursor.isFirst()) {
+                jpql += " where o.id > :orderId";
+            }
+            jpql += " order by o.id asc";
+        } else {
+            // 주문시간이 없는 주문은 DB 마다 null 정렬 위치가 다르므로 nulls last 로 고정하고 커서 조건에도 포함
+            if (!cursor.isFirst() && cursor.getOrderDate() == null) {
+                jpql += " where o.orderDate is null and o.id < :orderId";
+            } else if (!cursor.isFirst()) {
+                jpql += " where o.orderDate < :orderDate" +
+                        " or (o.orderDate = :orderDate and o.id < :orderId)" +
+                        " or o.orderDate is null";
+            }
+            jpql += " order by o.orderDate desc nulls last, o.id desc";
+        }
+
+        TypedQuery<Order> query = em.createQuery(jpql, Order.class);
+        if (!cursor.isFirst()) {
+            query.setParameter("orderId", cursor.getOrderId());
+            if (cursor.getSort() == OrderCursor.Sort.ORDER_DATE && cursor.getOrderDate() != null) {
+                query.setParameter("orderDate", cursor.getOrderDate());
+            }
+        }
+        return query.setMaxResults(limit).getResultList();
+    }
+
+    // 전체 주문 내보내기 - 주문을 기준으로 회원/배송은 페치 조인, 주문상품/상품은 left join 해서 주문상품 한 건이 row 하나
+    // 주문상품이 없는 주문도 주문상품 null 인 row 하나로 내보냄
+    // order_id 순으로 커서를 읽으면서 (주문, 주문상품) 을 한 건씩 consumer 에 넘김
+    // clearInterval 건마다 영속성 컨텍스트를 비워서 읽은 엔티티가 쌓이지 않게 하고, 2차 캐시에도 넣지 않음
+    public void scrollAllWithItems(int fetchSize, int clearInterval, BiConsumer<Order, OrderItem> consumer) {
+        Query<?> query = em.createQuery(
+                        "select o, oi from Order o" +
+                                " join fetch o.member m" +
+                                " join fetch o.delivery d" +
+                                " left join o.orderItems oi" +
+                                " left join fetch oi.item i" +
+                                " order by o.id, oi.id", Object[].class)
+                .unwrap(Query.class);
+
+        try (ScrollableResults scroll = query
+                .setFetchSize(fetchSize)
+                .setReadOnly(true)
+                .setCacheMode(CacheMode.IGNORE)
+                .scroll(ScrollMode.FORWARD_ONLY)) {
+            int count = 0;
+            while (scroll.next()) {
+                consumer.accept((Order) scroll.get(0), (OrderItem) scroll.get(1));
+                if (++count % clearInterval == 0) {
+                    em.clear();
+                }
+            }
+        }
+    }
 }
@@ -9,4 +9,11 @@ public class OrderSearch {
 
     private String memberName;
     private OrderStatus orderStatus;
+
+    private Integer limit; // 없으면 jpashop.order.search.max-results
+    private Sort sort;     // 없으면 정렬 안함
+
+    public enum Sort {
+        ID_ASC, ID_DESC, ORDER_DATE_DESC
+    }
 }
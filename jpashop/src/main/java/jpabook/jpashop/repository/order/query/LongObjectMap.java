@@ -0,0 +1,107 @@
+package jpabook.jpashop.repository.order.query;
+
+import java.util.function.LongFunction;
+
+/**
+ * long 키 해시맵 (open addressing, 선형 탐색)
+ *
+ * Map<Long, V> 는 키마다 Long 객체와 Entry 노드를 만들기 때문에 주문 수만큼 객체가 늘어남
+ * 키를 long[] 에 그대로 두고 값은 같은 위치의 Object[] 에 보관
+ * null 값은 넣을 수 없음 (빈 칸 표시로 사용)
+ */
+public final class LongObjectMap<V> {
+
+    private static final long GOLDEN_RATIO = 0x9E3779B97F4A7C15L;
+    // 배열 크기 상한 (2의 거듭제곱 중 int 로 표현되는 가장 큰 값)
+    static final int MAX_CAPACITY = 1 << 30;
+
+    private long[] keys;
+    private Object[] values;
+    private int mask;
+    private int size;
+
+    public LongObjectMap() {
+        this(16);
+    }
+
+    public LongObjectMap(int expectedSize) {
+        int capacity = capacityFor(expectedSize);
+        keys = new long[capacity];
+        values = new Object[capacity];
+        mask = capacity - 1;
+    }
+
+    @SuppressWarnings("unchecked")
+    public V get(long key) {
+        int index = indexOf(key, keys, values, mask);
+        return (V) values[index];
+    }
+
+    public V put(long key, V value) {
+        if (value == null) {
+            throw new IllegalArgumentException("null 값은 넣을 수 없습니다.");
+        }
+        int index = indexOf(key, keys, values, mask);
+        @SuppressWarnings("unchecked")
+        V old = (V) values[index];
+        // 빈 칸이 하나도 없으면 탐색이 끝나지 않으므로 한 칸은 남겨 둠
+        if (old == null && size >= MAX_CAPACITY - 1) {
+            throw new IllegalStateException("LongObjectMap 최대 크기를 넘었습니다. size=" + size);
+        }
+        keys[index] = key;
+        values[index] = value;
+        if (old == null && ++size > keys.length >>> 1) {
+            resize();
+        }
+        return old;
+    }
+
+    public V computeIfAbsent(long key, LongFunction<V> mappingFunction) {
+        V value = get(key);
+        if (value == null) {
+            value = mappingFunction.apply(key);
+            put(key, value);
+        }
+        return value;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    // expectedSize 개를 넣어도 절반 이하로 차는 2의 거듭제곱 (expectedSize * 2 가 int 를 넘으면 MAX_CAPACITY)
+    static int capacityFor(int expectedSize) {
+        if (expectedSize >= MAX_CAPACITY >>> 1) {
+            return MAX_CAPACITY;
+        }
+        return Integer.highestOneBit(Math.max(4, expectedSize) * 2 - 1) << 1;
+    }
+
+    // key 가 있는 칸 또는 처음 만나는 빈 칸
+    private static int indexOf(long key, long[] keys, Object[] values, int mask) {
+        int index = (int) ((key * GOLDEN_RATIO) >>> 32) & mask;
+        while (values[index] != null && keys[index] != key) {
+            index = (index + 1) & mask;
+        }
+        return index;
+    }
+
+    // MAX_CAPACITY 에서는 더 늘리지 않음
+    private void resize() {
+        if (keys.length == MAX_CAPACITY) {
+            return;
+        }
+        long[] oldKeys = keys;
+        Object[] oldValues = values;
+        keys = new long[oldKeys.length * 2];
+        values = new Object[oldValues.length * 2];
+        mask = keys.length - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldValues[i] != null) {
+                int index = indexOf(oldKeys[i], keys, values, mask);
+                keys[index] = oldKeys[i];
+                values[index] = oldValues[i];
+            }
+        }
+    }
+}
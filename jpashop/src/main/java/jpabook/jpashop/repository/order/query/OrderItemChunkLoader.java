@@ -0,0 +1,134 @@
+package jpabook.jpashop.repository.order.query;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 주문 id 목록으로 주문상품을 나눠서 조회 (OrderQueryRepository.findAllByDto_optimization)
+ *
+ * 주문 id 를 한 번에 in 절에 넣으면 주문이 많을 때 드라이버 파라미터 수 제한에 걸리고
+ * 목록 길이마다 다른 SQL 이 되어서 쿼리 플랜을 매번 새로 만듦
+ * - chunk-size 개씩 나눠서 조회, hibernate.query.in_clause_parameter_padding 으로
+ *   in 절 파라미터 수를 2의 거듭제곱으로 맞춰서 SQL 모양(쿼리 플랜)을 재사용
+ * - parallelism > 1 이면 덩어리들을 고정 크기 스레드 풀에서 동시에 조회
+ *   EntityManager 는 스레드에 안전하지 않아서 덩어리마다 새 EntityManager 로 조회하고 바로 닫음
+ *   (호출한 쪽 트랜잭션과 다른 커넥션이라 그 사이에 커밋된 변경이 섞일 수 있음)
+ */
+@Slf4j
+@Component
+public class OrderItemChunkLoader {
+
+    private static final String JPQL = "select new jpabook.jpashop.repository.order.query.OrderItemQueryDto(oi.order.id, i.name, oi.orderPrice, oi.count)" +
+            " from OrderItem oi" +
+            " join oi.item i " +
+            " where oi.order.id in :orderIds";
+
+    private final EntityManagerFactory entityManagerFactory;
+    private final int chunkSize;
+    private final ThreadPoolExecutor executor;
+
+    public OrderItemChunkLoader(EntityManagerFactory entityManagerFactory,
+                                @Value("${jpashop.order.query.in-chunk-size:500}") int chunkSize,
+                                @Value("${jpashop.order.query.parallelism:1}") int parallelism) {
+        this.entityManagerFactory = entityManagerFactory;
+        this.chunkSize = Math.max(1, chunkSize);
+        this.executor = parallelism > 1 ? newExecutor(parallelism) : null;
+    }
+
+    /**
+     * em 은 호출한 쪽의 EntityManager (순차 조회할 때 사용)
+     */
+    public LongObjectMap<List<OrderItemQueryDto>> load(EntityManager em, List<Long> orderIds) {
+        LongObjectMap<List<OrderItemQueryDto>> result = new LongObjectMap<>(orderIds.size());
+        if (orderIds.isEmpty()) {
+            return result;
+        }
+
+        List<List<Long>> chunks = new ArrayList<>();
+        for (int from = 0; from < orderIds.size(); from += chunkSize) {
+            chunks.add(orderIds.subList(from, Math.min(from + chunkSize, orderIds.size())));
+        }
+
+        if (executor == null || chunks.size() == 1) {
+            for (List<Long> chunk : chunks) {
+                addAll(result, query(em, chunk));
+            }
+            return result;
+        }
+
+        List<Future<List<OrderItemQueryDto>>> futures = new ArrayList<>(chunks.size());
+        for (List<Long> chunk : chunks) {
+            futures.add(executor.submit(() -> queryWithNewEntityManager(chunk)));
+        }
+        try {
+            for (Future<List<OrderItemQueryDto>> future : futures) {
+                addAll(result, future.get());
+            }
+        } catch (InterruptedException e) {
+            futures.forEach(f -> f.cancel(true));
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("주문상품 조회 중 인터럽트", e);
+        } catch (ExecutionException e) {
+            futures.forEach(f -> f.cancel(true));
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+        return result;
+    }
+
+    @PreDestroy
+    public void close() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    private List<OrderItemQueryDto> queryWithNewEntityManager(List<Long> orderIds) {
+        EntityManager em = entityManagerFactory.createEntityManager();
+        try {
+            return query(em, orderIds);
+        } finally {
+            em.close();
+        }
+    }
+
+    private static List<OrderItemQueryDto> query(EntityManager em, List<Long> orderIds) {
+        return em.createQuery(JPQL, OrderItemQueryDto.class)
+                .setParameter("orderIds", orderIds)
+                .getResultList();
+    }
+
+    private static void addAll(LongObjectMap<List<OrderItemQueryDto>> result, List<OrderItemQueryDto> orderItems) {
+        for (OrderItemQueryDto orderItem : orderItems) {
+            result.computeIfAbsent(orderItem.getOrderId(), id -> new ArrayList<>()).add(orderItem);
+        }
+    }
+
+    // 큐가 차면 호출한 스레드가 직접 조회 (요청 스레드가 무한정 쌓이지 않게 함)
+    private static ThreadPoolExecutor newExecutor(int parallelism) {
+        AtomicInteger sequence = new AtomicInteger();
+        return new ThreadPoolExecutor(parallelism, parallelism, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(parallelism * 4),
+                r -> {
+                    Thread thread = new Thread(r, "order-item-loader-" + sequence.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+}
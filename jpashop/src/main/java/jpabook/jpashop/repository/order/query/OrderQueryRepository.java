@@ -1,11 +1,15 @@
 package jpabook.jpashop.repository.order.query;
 
 import lombok.RequiredArgsConstructor;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.query.Query;
 import org.springframework.stereotype.Repository;
 
 import javax.persistence.EntityManager;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 @Repository
@@ -13,6 +17,7 @@ import java.util.stream.Collectors;
 public class OrderQueryRepository {
 
     private final EntityManager em;
+    private final OrderItemChunkLoader orderItemChunkLoader;
 
     public List<OrderQueryDto> findOrderQueryDtos() {
         List<OrderQueryDto> result = findOrders(); // query 1개 -> N개
@@ -27,24 +32,16 @@ public class OrderQueryRepository {
         List<OrderQueryDto> result = findOrders(); // query 1개 -> N개
 
         List<Long> orderIds = toOrderIds(result);
-        Map<Long, List<OrderItemQueryDto>> orderItemMap = findOrderItemMap(orderIds);
+        LongObjectMap<List<OrderItemQueryDto>> orderItemMap = findOrderItemMap(orderIds);
 
         result.forEach(o -> o.setOrderItems(orderItemMap.get(o.getOrderId())));
 
         return result;
     }
 
-    private Map<Long, List<OrderItemQueryDto>> findOrderItemMap(List<Long> orderIds) {
-        List<OrderItemQueryDto> orderItems = em.createQuery("select new jpabook.jpashop.repository.order.query.OrderItemQueryDto(oi.order.id, i.name, oi.orderPrice, oi.count)" +
-                        " from OrderItem oi" +
-                        " join oi.item i " +
-                        " where oi.order.id in :orderIds", OrderItemQueryDto.class)
-                .setParameter("orderIds", orderIds)
-                .getResultList();
-
-        Map<Long, List<OrderItemQueryDto>> orderItemMap = orderItems.stream()
-                .collect(Collectors.groupingBy(orderItemQueryDto -> orderItemQueryDto.getOrderId()));
-        return orderItemMap;
+    // in 절을 jpashop.order.query.in-chunk-size 개씩 나눠서 조회 (OrderItemChunkLoader)
+    private LongObjectMap<List<OrderItemQueryDto>> findOrderItemMap(List<Long> orderIds) {
+        return orderItemChunkLoader.load(em, orderIds);
     }
 
     private static List<Long> toOrderIds(List<OrderQueryDto> result) {
@@ -82,4 +79,40 @@ public class OrderQueryRepository {
                         " join oi.item i", OrderFlatDto.class)
                 .getResultList();
     }
+
+    // 플랫 데이터 스트리밍 - order_id 순으로 정렬된 JOIN 결과를 커서로 한 줄씩 읽으면서
+    // 같은 주문의 연속된 row 를 OrderQueryDto 하나로 접어서 바로 consumer 에 넘김
+    // 전체 결과를 List 로 올리지 않기 때문에 주문 수와 상관없이 메모리 사용량이 일정함
+    public void streamAllByDto_flat(int fetchSize, Consumer<OrderQueryDto> consumer) {
+        // unwrap 은 raw 타입을 반환하므로 Query<?> 로 받고 row 마다 캐스팅 (unchecked 변환 없음)
+        Query<?> query = em.createQuery(
+                "select new jpabook.jpashop.repository.order.query.OrderFlatDto(o.id, m.name, o.orderDate, o.status, d.address, i.name, oi.orderPrice, oi.count)" +
+                        " from Order o" +
+                        " join o.member m" +
+                        " join o.delivery d" +
+                        " join o.orderItems oi" +
+                        " join oi.item i" +
+                        " order by o.id", OrderFlatDto.class)
+                .unwrap(Query.class);
+
+        try (ScrollableResults scroll = query
+                .setFetchSize(fetchSize)
+                .setReadOnly(true)
+                .scroll(ScrollMode.FORWARD_ONLY)) {
+            OrderQueryDto current = null;
+            while (scroll.next()) {
+                OrderFlatDto flat = (OrderFlatDto) scroll.get(0);
+                if (current == null || !current.getOrderId().equals(flat.getOrderId())) {
+                    if (current != null) {
+                        consumer.accept(current);
+                    }
+                    current = new OrderQueryDto(flat.getOrderId(), flat.getName(), flat.getOrderDate(), flat.getOrderStatus(), flat.getAddress(), new ArrayList<>());
+                }
+                current.getOrderItems().add(new OrderItemQueryDto(flat.getOrderId(), flat.getItemName(), flat.getOrderPrice(), flat.getCount()));
+            }
+            if (current != null) {
+                consumer.accept(current);
+            }
+        }
+    }
 }
@@ -26,5 +26,5 @@ public class OrderSimpleQueryRepository {
     }
 
     // V4 보다 성능 최적화를 위해서는
-    // JPA 제공 네이티브 SQL이나 스프링 JDBC Template 사용
+    // JPA 제공 네이티브 SQL이나 스프링 JDBC Template 사용 (OrderSimpleJdbcRepository)
 }
@@ -1,13 +1,17 @@
 package jpabook.jpashop.service;
 
+import jpabook.jpashop.domain.event.ItemChangedEvent;
 import jpabook.jpashop.domain.item.Book;
 import jpabook.jpashop.domain.item.Item;
+import jpabook.jpashop.ledger.StockLedger;
 import jpabook.jpashop.repository.ItemRepository;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
+import java.util.Objects;
 
 @Service
 @Transactional(readOnly = true)
@@ -15,18 +19,33 @@ import java.util.List;
 public class ItemService {
 
     private final ItemRepository itemRepository;
+    private final StockReservationEngine stockReservationEngine;
+    private final ApplicationEventPublisher eventPublisher;
+    private final StockLedger stockLedger;
 
     @Transactional
     public void saveItem(Item item){
+        boolean created = item.getId() == null;
         itemRepository.save(item);
+        if (created) {
+            stockLedger.recordInit(item);
+        }
     }
 
     @Transactional
     public void updateItem(Long ItemId, String name, int price, int stockQuantity){
         Item findItem = itemRepository.findOne(ItemId);
+        boolean nameChanged = !Objects.equals(findItem.getName(), name);
+        // 엔진을 켜면 아직 DB 에 반영 안 된 변경량(reset 이 꺼낸 값)까지 더한 값이 수정 전 재고
+        int currentStock = findItem.getStockQuantity();
+        if (stockReservationEngine.isEnabled()) {
+            currentStock += stockReservationEngine.reset(findItem, stockQuantity);
+        }
+        stockLedger.recordAdjust(ItemId, stockQuantity - currentStock);
         findItem.setName(name);
         findItem.setPrice(price);
         findItem.setStockQuantity(stockQuantity);
+        eventPublisher.publishEvent(new ItemChangedEvent(ItemId, nameChanged));
     }
 
     public List<Item> findItems(){
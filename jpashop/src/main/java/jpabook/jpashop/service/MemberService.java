@@ -1,9 +1,15 @@
 package jpabook.jpashop.service;
 
 import jpabook.jpashop.domain.Member;
+import jpabook.jpashop.domain.event.MemberChangedEvent;
+import jpabook.jpashop.repository.MemberNameFilter;
+import jpabook.jpashop.repository.MemberNameIndex;
 import jpabook.jpashop.repository.MemberRepository;
 import lombok.RequiredArgsConstructor;
+import org.hibernate.exception.ConstraintViolationException;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -15,16 +21,27 @@ import java.util.List;
 public class MemberService {
 
     private final MemberRepository memberRepository;
+    private final MemberNameIndex memberNameIndex;
+    private final MemberNameFilter memberNameFilter;
+    private final ApplicationEventPublisher eventPublisher;
 
     // 회원 가입
     @Transactional
     public Long join(Member member){
         validateDuplicateMember(member);
-        memberRepository.save(member);
+        memberNameFilter.put(member.getName());
+        // 동시에 같은 이름으로 가입하면 조회로는 막을 수 없어서 유니크 제약으로 한 번 더 막음
+        saveOrThrowDuplicate(() -> memberRepository.save(member));
+        memberNameIndex.update(member.getId(), member.getName());
+        eventPublisher.publishEvent(new MemberChangedEvent(member.getId(), true));
         return member.getId();
     }
 
     private void validateDuplicateMember(Member member) {
+        // 블룸 필터에 없는 이름은 DB 에도 없으므로 조회 생략
+        if (!memberNameFilter.mightContain(member.getName())) {
+            return;
+        }
         // Exception
         List<Member> findMembers = memberRepository.findByName(member.getName());
         if (!findMembers.isEmpty()){
@@ -45,6 +62,30 @@ public class MemberService {
     @Transactional
     public void update(Long id, String name) {
         Member member = memberRepository.findOne(id);
-        member.setName(name);
+        memberNameFilter.put(name);
+        saveOrThrowDuplicate(() -> member.setName(name));
+        memberNameIndex.update(id, name);
+        eventPublisher.publishEvent(new MemberChangedEvent(id, false));
+    }
+
+    // 이름 유니크 제약 위반은 기존과 같이 IllegalStateException 으로 변환
+    private void saveOrThrowDuplicate(Runnable change) {
+        try {
+            change.run();
+            memberRepository.flush();
+        } catch (DataIntegrityViolationException e) {
+            if (isDuplicateName(e)) {
+                throw new IllegalStateException("이미 존재하는 회원입니다.", e);
+            }
+            throw e;
+        }
+    }
+
+    private static boolean isDuplicateName(DataIntegrityViolationException e) {
+        if (e.getCause() instanceof ConstraintViolationException) {
+            String constraintName = ((ConstraintViolationException) e.getCause()).getConstraintName();
+            return constraintName != null && constraintName.toLowerCase().contains("uk_member_name");
+        }
+        return false;
     }
 }
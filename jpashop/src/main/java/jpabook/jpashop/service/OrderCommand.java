@@ -0,0 +1,17 @@
+package jpabook.jpashop.service;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * 주문 요청 (회원, 상품, 수량)
+ * 요청 스레드의 Idempotency-Key 도 같이 넘겨서 주문 트랜잭션 안에서 반영 표시를 남김 (없으면 null)
+ */
+@Getter
+@AllArgsConstructor
+public class OrderCommand {
+    private final Long memberId;
+    private final Long itemId;
+    private final int count;
+    private final String idempotencyKey;
+}
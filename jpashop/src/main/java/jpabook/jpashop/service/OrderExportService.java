@@ -0,0 +1,56 @@
+package jpabook.jpashop.service;
+
+import jpabook.jpashop.domain.OrderItem;
+import jpabook.jpashop.repository.OrderRepository;
+import jpabook.jpashop.repository.order.query.OrderItemQueryDto;
+import jpabook.jpashop.repository.order.query.OrderQueryDto;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.function.Consumer;
+
+/**
+ * 전체 주문 내보내기
+ * 커서로 읽은 주문상품을 주문 단위로 모아서 주문 하나가 완성될 때마다 consumer 에 넘김
+ * 주문상품이 없는 주문도 orderItems 가 빈 주문으로 내보냄
+ * 메모리에는 주문 한 건과 clear-interval 건의 엔티티만 올라감
+ */
+@Service
+@Transactional(readOnly = true)
+@RequiredArgsConstructor
+public class OrderExportService {
+
+    private final OrderRepository orderRepository;
+
+    @Value("${jpashop.export.fetch-size:1000}")
+    private int fetchSize = 1000;
+
+    @Value("${jpashop.export.clear-interval:1000}")
+    private int clearInterval = 1000;
+
+    public void exportOrders(Consumer<OrderQueryDto> consumer) {
+        OrderQueryDto[] current = new OrderQueryDto[1];
+        orderRepository.scrollAllWithItems(fetchSize, clearInterval, (order, orderItem) -> {
+            if (current[0] == null || !current[0].getOrderId().equals(order.getId())) {
+                if (current[0] != null) {
+                    consumer.accept(current[0]);
+                }
+                current[0] = new OrderQueryDto(order.getId(), order.getMember().getName(), order.getOrderDate(),
+                        order.getStatus(), order.getDelivery().getAddress(), new ArrayList<>());
+            }
+            if (orderItem != null) {
+                current[0].getOrderItems().add(toDto(order.getId(), orderItem));
+            }
+        });
+        if (current[0] != null) {
+            consumer.accept(current[0]);
+        }
+    }
+
+    private static OrderItemQueryDto toDto(Long orderId, OrderItem orderItem) {
+        return new OrderItemQueryDto(orderId, orderItem.getItem().getName(), orderItem.getOrderPrice(), orderItem.getCount());
+    }
+}
@@ -0,0 +1,202 @@
+package jpabook.jpashop.service;
+
+import jpabook.jpashop.exception.OutcomeUnknownException;
+import jpabook.jpashop.idempotency.IdempotencyKeyHolder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * 주문 그룹 커밋 (jpashop.order.pipeline.enabled=true 일 때 사용)
+ *
+ * 주문마다 트랜잭션을 커밋하면 주문 수만큼 커밋(디스크 fsync)이 발생함
+ * 들어온 주문을 큐에 모았다가 최대 max-batch-size 건 또는 첫 주문 후 max-wait-ms 가 지나면
+ * 한 트랜잭션으로 처리하고 (JDBC batch insert) 각 요청자에게 자기 결과를 돌려줌
+ *
+ * 재고 충돌은 OrderService.orderBatch 가 배치 전체를 재시도하고,
+ * 그래도 커밋이 실패하면 같은 배치의 주문을 한 건씩 다시 처리해서 다른 주문이 같이 실패하지 않게 함
+ * 요청자는 result-timeout-ms 까지만 기다림 (큐에서 꺼내지기 전이면 주문을 취소하고, 처리 중이면 결과를 알 수 없음)
+ * 결과를 알 수 없으면 OutcomeUnknownException - Idempotency-Key 선점을 풀지 않아서 재시도가 중복 주문하지 않음
+ * 중지(stop) 후에는 새 주문을 거부하고 처리하지 못한 주문은 예외로 완료
+ */
+@Slf4j
+@Component
+public class OrderPipeline {
+
+    private final OrderService orderService;
+    private final boolean enabled;
+    private final int maxBatchSize;
+    private final long maxWaitNanos;
+    private final long resultTimeoutMillis;
+    private final BlockingQueue<PendingOrder> queue;
+
+    private volatile boolean running;
+    private Thread drainer;
+
+    public OrderPipeline(OrderService orderService,
+                         @Value("${jpashop.order.pipeline.enabled:false}") boolean enabled,
+                         @Value("${jpashop.order.pipeline.max-batch-size:50}") int maxBatchSize,
+                         @Value("${jpashop.order.pipeline.max-wait-ms:5}") long maxWaitMillis,
+                         @Value("${jpashop.order.pipeline.queue-capacity:10000}") int queueCapacity,
+                         @Value("${jpashop.order.pipeline.result-timeout-ms:30000}") long resultTimeoutMillis) {
+        this.orderService = orderService;
+        this.enabled = enabled;
+        this.maxBatchSize = maxBatchSize;
+        this.maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(maxWaitMillis);
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.resultTimeoutMillis = resultTimeoutMillis;
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        running = true;
+        drainer = new Thread(this::drain, "order-pipeline");
+        drainer.setDaemon(true);
+        drainer.start();
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        if (drainer != null) {
+            drainer.join(TimeUnit.SECONDS.toMillis(10));
+        }
+        // 중지 직전에 들어왔거나 제한 시간 안에 처리하지 못한 주문
+        List<PendingOrder> leftovers = new ArrayList<>();
+        queue.drainTo(leftovers);
+        if (!leftovers.isEmpty()) {
+            log.warn("주문 파이프라인 중지, 처리하지 못한 주문 size={}", leftovers.size());
+            IllegalStateException stopped = new IllegalStateException("주문 파이프라인이 중지되었습니다.");
+            leftovers.forEach(p -> p.result.completeExceptionally(stopped));
+        }
+    }
+
+    /**
+     * 주문 후 커밋될 때까지 기다렸다가 주문 id 반환
+     * 파이프라인을 끄면 OrderService.order 를 바로 호출
+     */
+    public Long order(Long memberId, Long itemId, int count) {
+        if (!enabled) {
+            return orderService.order(memberId, itemId, count);
+        }
+
+        if (!running) {
+            throw new IllegalStateException("주문 파이프라인이 중지되었습니다.");
+        }
+        PendingOrder pending = new PendingOrder(new OrderCommand(memberId, itemId, count, IdempotencyKeyHolder.get()));
+        try {
+            // 큐가 가득 차면 대기 (배압)
+            if (!queue.offer(pending, resultTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                throw new IllegalStateException("주문 대기열이 가득 찼습니다.");
+            }
+            // 넣는 사이에 중지됐으면 drainer 가 꺼내지 않았을 때만 거부 (꺼냈으면 처리 결과를 기다림)
+            if (!running && queue.remove(pending)) {
+                throw new IllegalStateException("주문 파이프라인이 중지되었습니다.");
+            }
+            return pending.result.get(resultTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            if (queue.remove(pending)) {
+                throw new IllegalStateException("주문 처리 대기 시간 초과 (주문하지 않음)", e);
+            }
+            throw new OutcomeUnknownException("주문 처리 대기 시간 초과 (처리 중이라 주문 여부를 알 수 없음)", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            if (queue.remove(pending)) {
+                throw new IllegalStateException("주문 처리 대기 중 인터럽트 (주문하지 않음)", e);
+            }
+            throw new OutcomeUnknownException("주문 처리 대기 중 인터럽트 (처리 중이라 주문 여부를 알 수 없음)", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    private void drain() {
+        List<PendingOrder> batch = new ArrayList<>(maxBatchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                PendingOrder first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+
+                long deadline = System.nanoTime() + maxWaitNanos;
+                while (batch.size() < maxBatchSize) {
+                    long remaining = deadline - System.nanoTime();
+                    PendingOrder next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : null;
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                commit(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                running = false;
+            } catch (RuntimeException e) {
+                log.error("주문 파이프라인 처리 실패", e);
+                batch.forEach(p -> p.result.completeExceptionally(e));
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void commit(List<PendingOrder> batch) {
+        List<OrderCommand> commands = new ArrayList<>(batch.size());
+        batch.forEach(p -> commands.add(p.command));
+
+        List<OrderResult> results;
+        try {
+            results = orderService.orderBatch(commands);
+        } catch (RuntimeException e) {
+            log.warn("주문 배치 커밋 실패, 한 건씩 다시 처리 size={}", batch.size(), e);
+            batch.forEach(this::commitOne);
+            return;
+        }
+
+        for (int i = 0; i < batch.size(); i++) {
+            OrderResult result = results.get(i);
+            if (result.isSuccess()) {
+                batch.get(i).result.complete(result.getOrderId());
+            } else {
+                batch.get(i).result.completeExceptionally(result.getException());
+            }
+        }
+    }
+
+    private void commitOne(PendingOrder pending) {
+        OrderCommand command = pending.command;
+        try {
+            pending.result.complete(orderService.order(command));
+        } catch (RuntimeException e) {
+            pending.result.completeExceptionally(e);
+        }
+    }
+
+    private static class PendingOrder {
+        private final OrderCommand command;
+        private final CompletableFuture<Long> result = new CompletableFuture<>();
+
+        private PendingOrder(OrderCommand command) {
+            this.command = command;
+        }
+    }
+}
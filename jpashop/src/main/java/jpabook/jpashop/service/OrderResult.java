@@ -0,0 +1,27 @@
+package jpabook.jpashop.service;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * 여러 주문을 한 번에 처리할 때 주문별 결과 (주문 id 또는 실패 원인)
+ */
+@Getter
+@RequiredArgsConstructor(access = AccessLevel.PRIVATE)
+public class OrderResult {
+    private final Long orderId;
+    private final RuntimeException exception;
+
+    public static OrderResult success(Long orderId) {
+        return new OrderResult(orderId, null);
+    }
+
+    public static OrderResult failure(RuntimeException exception) {
+        return new OrderResult(null, exception);
+    }
+
+    public boolean isSuccess() {
+        return exception == null;
+    }
+}
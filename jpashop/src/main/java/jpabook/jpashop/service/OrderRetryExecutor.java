@@ -0,0 +1,171 @@
+package jpabook.jpashop.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jpabook.jpashop.domain.item.Item;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.StaleObjectStateException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.OptimisticLockException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * 낙관적 락 충돌 재시도
+ *
+ * Item, Order 의 @Version 이 충돌하면 (다른 트랜잭션이 먼저 재고/상태를 바꿈) 트랜잭션을 새로 시작해서 다시 실행
+ * 재시도마다 새 트랜잭션에서 최신 값을 읽어야 하므로 트랜잭션 밖에서 호출해야 함
+ * 이미 트랜잭션 안이면 충돌한 영속성 컨텍스트를 되살릴 수 없어서 재시도 없이 한 번만 실행
+ *
+ * - 최대 max-attempts 번, 재시도 전 0 ~ min(max-backoff, initial-backoff * 2^n) 사이 무작위 대기 (full jitter)
+ *   같은 상품에서 충돌한 요청들이 같은 시점에 다시 부딪히지 않게 흩어 줌
+ * - 충돌 수는 jpashop.order.optimistic_lock.conflicts (operation, entity 태그)
+ *   시도 수 jpashop.order.optimistic_lock.attempts 와 나누면 충돌률
+ * - 엔티티 id 는 태그로 쓰면 시계열이 끝없이 늘어나므로 충돌이 잦은 top-conflicts 개만 따로 셈 (getTopConflicts)
+ */
+@Slf4j
+@Component
+public class OrderRetryExecutor {
+
+    private final TransactionTemplate transactionTemplate;
+    private final MeterRegistry meterRegistry;
+    private final int maxAttempts;
+    private final long initialBackoffMillis;
+    private final long maxBackoffMillis;
+    private final int topConflictsSize;
+    // "엔티티#id" -> 충돌 수 (Space-Saving, 최대 topConflictsSize 개)
+    private final Map<String, Long> topConflicts = new HashMap<>();
+
+    public OrderRetryExecutor(PlatformTransactionManager transactionManager,
+                              MeterRegistry meterRegistry,
+                              @Value("${jpashop.order.retry.max-attempts:5}") int maxAttempts,
+                              @Value("${jpashop.order.retry.initial-backoff-ms:5}") long initialBackoffMillis,
+                              @Value("${jpashop.order.retry.max-backoff-ms:100}") long maxBackoffMillis,
+                              @Value("${jpashop.order.retry.top-conflicts:100}") int topConflictsSize) {
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.meterRegistry = meterRegistry;
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.initialBackoffMillis = initialBackoffMillis;
+        this.maxBackoffMillis = maxBackoffMillis;
+        this.topConflictsSize = Math.max(1, topConflictsSize);
+    }
+
+    /**
+     * operation : 메트릭 태그 (order, cancel)
+     * itemId : 충돌한 엔티티를 알 수 없을 때(JDBC batch 갱신 건수 불일치) 대신 기록할 상품 id, 모르면 null
+     */
+    public <T> T execute(String operation, Long itemId, Supplier<T> work) {
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            attempted(operation);
+            return work.get();
+        }
+
+        for (int attempt = 1; ; attempt++) {
+            attempted(operation);
+            try {
+                return transactionTemplate.execute(status -> work.get());
+            } catch (OptimisticLockingFailureException | OptimisticLockException e) {
+                conflicted(operation, e, itemId);
+                if (attempt >= maxAttempts) {
+                    log.warn("낙관적 락 재시도 초과 operation={} attempts={}", operation, attempt);
+                    throw e;
+                }
+                backoff(attempt);
+            }
+        }
+    }
+
+    private void backoff(int attempt) {
+        long ceiling = Math.min(maxBackoffMillis, initialBackoffMillis << Math.min(attempt - 1, 20));
+        if (ceiling <= 0) {
+            return;
+        }
+        try {
+            TimeUnit.MILLISECONDS.sleep(ThreadLocalRandom.current().nextLong(ceiling + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("재시도 대기 중 인터럽트", e);
+        }
+    }
+
+    private void attempted(String operation) {
+        meterRegistry.counter("jpashop.order.optimistic_lock.attempts", "operation", operation).increment();
+    }
+
+    private void conflicted(String operation, RuntimeException e, Long itemId) {
+        String entity = "unknown";
+        Object id = null;
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof StaleObjectStateException) {
+                entity = simpleName(((StaleObjectStateException) t).getEntityName());
+                id = ((StaleObjectStateException) t).getIdentifier();
+                break;
+            }
+            if (t instanceof ObjectOptimisticLockingFailureException
+                    && ((ObjectOptimisticLockingFailureException) t).getPersistentClassName() != null) {
+                entity = simpleName(((ObjectOptimisticLockingFailureException) t).getPersistentClassName());
+                id = ((ObjectOptimisticLockingFailureException) t).getIdentifier();
+                break;
+            }
+        }
+        if (id == null && itemId != null) {
+            entity = Item.class.getSimpleName();
+            id = itemId;
+        }
+
+        Counter.builder("jpashop.order.optimistic_lock.conflicts")
+                .tag("operation", operation)
+                .tag("entity", entity)
+                .register(meterRegistry)
+                .increment();
+        log.debug("낙관적 락 충돌 operation={} entity={} id={}", operation, entity, id);
+        if (id != null) {
+            countConflict(entity + "#" + id);
+        }
+    }
+
+    /**
+     * 충돌이 잦은 엔티티 ("Item#7" -> 충돌 수) 많은 순으로 최대 limit 개
+     * 밀려났다 다시 들어온 항목은 실제보다 크게 셀 수 있음
+     */
+    public synchronized Map<String, Long> getTopConflicts(int limit) {
+        Map<String, Long> top = new LinkedHashMap<>();
+        topConflicts.entrySet().stream()
+                .sorted(Map.Entry.<String, Long>comparingByValue().reversed())
+                .limit(limit)
+                .forEach(e -> top.put(e.getKey(), e.getValue()));
+        return top;
+    }
+
+    // 가득 차면 가장 적게 충돌한 항목을 밀어내고 그 수 + 1 부터 셈 (자주 충돌하는 항목은 밀려나지 않음)
+    private synchronized void countConflict(String key) {
+        Long count = topConflicts.get(key);
+        if (count != null) {
+            topConflicts.put(key, count + 1);
+            return;
+        }
+        if (topConflicts.size() < topConflictsSize) {
+            topConflicts.put(key, 1L);
+            return;
+        }
+        Map.Entry<String, Long> min = Collections.min(topConflicts.entrySet(), Map.Entry.comparingByValue());
+        topConflicts.remove(min.getKey());
+        topConflicts.put(key, min.getValue() + 1);
+    }
+
+    private static String simpleName(String entityName) {
+        return entityName.substring(entityName.lastIndexOf('.') + 1);
+    }
+}
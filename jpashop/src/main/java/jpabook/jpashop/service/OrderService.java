@@ -4,16 +4,37 @@ import jpabook.jpashop.domain.Delivery;
 import jpabook.jpashop.domain.Member;
 import jpabook.jpashop.domain.Order;
 import jpabook.jpashop.domain.OrderItem;
+import jpabook.jpashop.domain.OrderStatus;
+import jpabook.jpashop.domain.event.OrderChangedEvent;
 import jpabook.jpashop.domain.item.Item;
+import jpabook.jpashop.domain.item.StockHandler;
+import jpabook.jpashop.idempotency.IdempotencyKeyHolder;
+import jpabook.jpashop.idempotency.IdempotencyStore;
+import jpabook.jpashop.ledger.StockLedger;
+import jpabook.jpashop.ledger.StockMovementReason;
 import jpabook.jpashop.repository.ItemRepository;
 import jpabook.jpashop.repository.MemberRepository;
+import jpabook.jpashop.repository.OrderCancelRepository;
 import jpabook.jpashop.repository.OrderRepository;
 import jpabook.jpashop.repository.OrderSearch;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
+import javax.persistence.OptimisticLockException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.TreeSet;
 
 @Service
 @Transactional(readOnly = true)
@@ -23,40 +44,213 @@ public class OrderService {
     private final OrderRepository orderRepository;
     private final MemberRepository memberRepository;
     private final ItemRepository itemRepository;
+    private final StockReservationEngine stockReservationEngine;
+    private final ApplicationEventPublisher eventPublisher;
+    private final OrderRetryExecutor retryExecutor;
+    private final OrderCancelRepository orderCancelRepository;
+    private final StockLedger stockLedger;
+    private final IdempotencyStore idempotencyStore;
+
+    @Value("${jpashop.order.cancel.chunk-size:500}")
+    private int cancelChunkSize = 500;
 
     /**
      * 주문
+     * 재고 낙관적 락이 충돌하면 새 트랜잭션으로 재시도 (트랜잭션은 OrderRetryExecutor 가 시작)
      */
-    @Transactional
+    @Transactional(propagation = Propagation.SUPPORTS)
     public Long order(Long memberId, Long itemId, int count){
+        return order(new OrderCommand(memberId, itemId, count, IdempotencyKeyHolder.get()));
+    }
+
+    /**
+     * 주문 (다른 스레드에서 요청을 대신 처리할 때 - 요청의 Idempotency-Key 를 command 에 담아서 호출)
+     */
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public Long order(OrderCommand command){
+        return retryExecutor.execute("order", command.getItemId(), () -> placeOrder(command));
+    }
+
+    /**
+     * 장바구니 주문 (상품 id -> 수량)
+     * - 상품은 in 쿼리 한 번으로 조회하고 id 오름차순으로 재고를 뺌
+     * - 재고 UPDATE 는 커밋할 때 hibernate.order_updates 로 id 순 정렬 + JDBC batch 한 번으로 실행
+     *   모든 주문이 같은 순서로 row 락을 잡기 때문에 상품이 겹치는 주문끼리 교착 상태가 생기지 않음
+     * - 재고 충돌은 @Version 으로 감지해서 재시도 (비관적 락 없음)
+     */
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public Long order(Long memberId, Map<Long, Integer> itemCounts){
+        if (itemCounts.isEmpty()) {
+            throw new IllegalArgumentException("주문할 상품이 없습니다.");
+        }
+        SortedMap<Long, Integer> sorted = new TreeMap<>(itemCounts);
+        Long itemId = sorted.size() == 1 ? sorted.firstKey() : null;
+        String idempotencyKey = IdempotencyKeyHolder.get();
+        return retryExecutor.execute("order", itemId, () -> placeOrder(memberId, sorted, idempotencyKey));
+    }
+
+    /**
+     * 주문 여러 건을 한 트랜잭션으로 처리 (그룹 커밋)
+     * 주문 하나가 실패해도 결과에만 담고 나머지 주문은 계속 처리
+     * 재고 낙관적 락이 충돌하면 배치 전체를 새 트랜잭션으로 재시도 (재시도를 다 쓰면 예외)
+     */
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public List<OrderResult> orderBatch(List<OrderCommand> commands){
+        return retryExecutor.execute("order", null, () -> placeOrders(commands));
+    }
+
+    private List<OrderResult> placeOrders(List<OrderCommand> commands){
+        List<OrderResult> results = new ArrayList<>(commands.size());
+        for (OrderCommand command : commands) {
+            try {
+                results.add(OrderResult.success(placeOrder(command)));
+            } catch (OptimisticLockingFailureException | OptimisticLockException e) {
+                // 충돌한 트랜잭션은 커밋할 수 없으므로 배치 전체를 재시도
+                throw e;
+            } catch (RuntimeException e) {
+                results.add(OrderResult.failure(e));
+            }
+        }
+        return results;
+    }
+
+    // 주문 저장(persist)이 마지막 단계라서 중간에 실패하면 영속성 컨텍스트에 남는 것이 없음
+    // 반영 표시는 주문과 같은 트랜잭션이라 주문이 커밋될 때만 남음
+    private Long placeOrder(OrderCommand command){
         // 엔티티 조회
-        Member member = memberRepository.findOne(memberId);
-        Item item = itemRepository.findOne(itemId);
+        Member member = memberRepository.findOne(command.getMemberId());
+        Item item = itemRepository.findOne(command.getItemId());
 
         // 배송정보 생성
         Delivery delivery = new Delivery();
         delivery.setAddress(member.getAddress());
 
         // 주문 상품 생성
-        OrderItem orderItem = OrderItem.createOrderItem(item, item.getPrice(), count);
+        OrderItem orderItem = OrderItem.createOrderItem(item, item.getPrice(), command.getCount(), stockHandler());
 
         // 주문 생성
         Order order = Order.createOrder(member, delivery, orderItem);
 
         // 주문 저장
         orderRepository.save(order);
+        stockLedger.recordOrder(order);
+        idempotencyStore.markApplied(command.getIdempotencyKey());
+        eventPublisher.publishEvent(new OrderChangedEvent(order.getId()));
+        return order.getId();
+    }
+
+    private Long placeOrder(Long memberId, SortedMap<Long, Integer> itemCounts, String idempotencyKey){
+        Member member = memberRepository.findOne(memberId);
+        List<Item> items = itemRepository.findAllById(itemCounts.keySet());
+        if (items.size() != itemCounts.size()) {
+            throw new IllegalArgumentException("존재하지 않는 상품이 있습니다. " + itemCounts.keySet());
+        }
+
+        Delivery delivery = new Delivery();
+        delivery.setAddress(member.getAddress());
+
+        OrderItem[] orderItems = new OrderItem[items.size()];
+        for (int i = 0; i < items.size(); i++) {
+            Item item = items.get(i);
+            orderItems[i] = OrderItem.createOrderItem(item, item.getPrice(), itemCounts.get(item.getId()), stockHandler());
+        }
+
+        Order order = Order.createOrder(member, delivery, orderItems);
+        orderRepository.save(order);
+        stockLedger.recordOrder(order);
+        idempotencyStore.markApplied(idempotencyKey);
+        eventPublisher.publishEvent(new OrderChangedEvent(order.getId()));
         return order.getId();
     }
 
     /**
      * 주문 취소
+     * 주문/재고 낙관적 락이 충돌하면 새 트랜잭션으로 재시도
      */
-    @Transactional
+    @Transactional(propagation = Propagation.SUPPORTS)
     public void cancelOrder(Long orderId){
-        // 주문 엔티티 조회
-        Order order = orderRepository.findOne(orderId);
-        // 주문 취소
-        order.cancel();
+        retryExecutor.execute("cancel", null, () -> {
+            // 주문 엔티티 조회
+            Order order = orderRepository.findOne(orderId);
+            // 주문 취소
+            order.cancel(stockHandler());
+            stockLedger.recordCancel(order);
+            eventPublisher.publishEvent(new OrderChangedEvent(orderId));
+            return null;
+        });
+    }
+
+    /**
+     * 주문 일괄 취소
+     * 주문/주문상품/상품 엔티티를 로딩하지 않고 chunk(주문 id 오름차순) 마다
+     * 주문 상태 batch UPDATE + 주문상품 수량 조회 + 재고 case UPDATE 한 번씩 실행 (원장은 커밋 전에 batch insert)
+     * 취소할 수 없는 주문(없는 주문, 배송 완료, 이미 취소)은 실패로 결과에 담고 나머지는 계속 처리
+     *
+     * @return 요청 순서대로 주문별 결과
+     */
+    @Transactional
+    public List<OrderResult> cancelOrders(List<Long> orderIds){
+        List<Long> sortedIds = new ArrayList<>(new TreeSet<>(orderIds));
+        Set<Long> canceled = new HashSet<>();
+        Map<Long, RuntimeException> failures = new HashMap<>();
+        SortedMap<Long, Long> restored = new TreeMap<>();
+
+        orderCancelRepository.flush();
+        for (int from = 0; from < sortedIds.size(); from += cancelChunkSize) {
+            List<Long> chunk = sortedIds.subList(from, Math.min(from + cancelChunkSize, sortedIds.size()));
+            List<Long> chunkCanceled = orderCancelRepository.cancel(chunk);
+            if (!chunkCanceled.isEmpty()) {
+                SortedMap<Long, Long> countByItem = new TreeMap<>();
+                for (Object[] row : orderCancelRepository.findOrderItemCounts(chunkCanceled)) {
+                    Long orderId = (Long) row[0];
+                    Long itemId = (Long) row[1];
+                    int count = (Integer) row[2];
+                    countByItem.merge(itemId, (long) count, Long::sum);
+                    stockLedger.record(itemId, count, StockMovementReason.CANCEL, orderId);
+                }
+                orderCancelRepository.restoreStock(countByItem);
+                countByItem.forEach((itemId, count) -> restored.merge(itemId, count, Long::sum));
+                canceled.addAll(chunkCanceled);
+            }
+            if (chunkCanceled.size() < chunk.size()) {
+                List<Long> rest = new ArrayList<>(chunk);
+                rest.removeAll(chunkCanceled);
+                failures.putAll(cancelFailures(rest));
+            }
+        }
+        orderCancelRepository.clear();
+        orderCancelRepository.evictItems(restored.keySet());
+        if (stockReservationEngine.isEnabled()) {
+            restored.forEach((itemId, count) -> stockReservationEngine.restored(itemId, count.intValue()));
+        }
+        canceled.forEach(orderId -> eventPublisher.publishEvent(new OrderChangedEvent(orderId)));
+
+        List<OrderResult> results = new ArrayList<>(orderIds.size());
+        for (Long orderId : orderIds) {
+            results.add(canceled.contains(orderId) ? OrderResult.success(orderId) : OrderResult.failure(failures.get(orderId)));
+        }
+        return results;
+    }
+
+    private Map<Long, RuntimeException> cancelFailures(List<Long> orderIds) {
+        Map<Long, Object[]> statuses = orderCancelRepository.findStatuses(orderIds);
+        Map<Long, RuntimeException> failures = new HashMap<>();
+        for (Long orderId : orderIds) {
+            Object[] status = statuses.get(orderId);
+            if (status == null) {
+                failures.put(orderId, new IllegalArgumentException("존재하지 않는 주문입니다. " + orderId));
+            } else if (status[0] == OrderStatus.CANCEL) {
+                failures.put(orderId, new IllegalStateException("이미 취소된 주문입니다."));
+            } else {
+                failures.put(orderId, new IllegalStateException("이미 배송 완료된 상품은 취소가 불가능합니다."));
+            }
+        }
+        return failures;
+    }
+
+    // 재고 예약 엔진을 켜면 엔티티 대신 엔진으로 재고를 빼고 되돌림
+    private StockHandler stockHandler() {
+        return stockReservationEngine.isEnabled() ? stockReservationEngine : StockHandler.ENTITY;
     }
 
     // 검색
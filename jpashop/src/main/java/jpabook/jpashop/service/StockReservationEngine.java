@@ -0,0 +1,372 @@
+package jpabook.jpashop.service;
+
+import jpabook.jpashop.domain.item.Item;
+import jpabook.jpashop.domain.item.StockHandler;
+import jpabook.jpashop.exception.NotEnoughStockException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PreDestroy;
+import javax.persistence.EntityManagerFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 인기 상품 재고 예약 엔진 (jpashop.stock.engine.enabled=true 일 때 사용)
+ *
+ * 엔티티 방식은 Item 을 읽고 stockQuantity 를 덮어쓰기 때문에 동시 주문시 갱신 손실이 생기고
+ * 막으려면 row 락으로 직렬화해야 함
+ *
+ * - 상품별 가용 재고를 여러 칸(stripe)에 나눠서 관리, 처음 사용할 때 Item.stockQuantity 로 초기화
+ *   예약은 스레드마다 정해진 칸에서 CAS 로 빼고, 모자라면 다른 칸에서 빌려옴 (칸은 0 아래로 내려가지 않음)
+ *   같은 상품의 동시 주문도 대부분 서로 다른 칸을 건드려서 한 카운터에 CAS 가 몰리지 않음
+ * - 칸마다 가용 재고와 진행 중 변경량(트랜잭션이 아직 끝나지 않은 예약/반환)을 long 하나에 같이 담음
+ *   예약/롤백은 두 값을 같이 바꾸고 커밋은 진행 중 변경량만 되돌리므로
+ *   (가용 재고 - 진행 중 변경량) 의 합 - DB 에 반영된 재고 = 아직 DB 에 반영 안 된 변경량
+ *   변경량을 따로 쌓지 않아서 예약/완료 경로에는 락도, 칸 밖의 공유 카운터도 없음
+ * - 주기적으로 상품별 변경량을 batch UPDATE 로 반영
+ * - 관리자 재고 수정(reset)과 flush 만 상품별 락을 잡음 (예약은 락을 보지 않음)
+ *   reset 은 수정 트랜잭션이 끝날 때까지 락을 잡아서 그 사이 flush 가 이전 변경량을 새 재고 위에 쓰지 않게 하고,
+ *   커밋되면 진행 중인 예약은 새 재고 기준으로 다시 맞춤
+ *
+ * 카운터가 DB 보다 앞서기 때문에 재고를 바꾸는 애플리케이션 인스턴스가 하나일 때만 사용해야 함
+ */
+@Slf4j
+@Component
+public class StockReservationEngine implements StockHandler {
+
+    // CPU 수 이상인 2의 거듭제곱
+    private static final int STRIPES = Math.max(1, Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 2 - 1));
+
+    private final JdbcTemplate jdbcTemplate;
+    private final EntityManagerFactory entityManagerFactory;
+    private final boolean enabled;
+
+    private final Map<Long, Stock> stocks = new ConcurrentHashMap<>();
+
+    public StockReservationEngine(JdbcTemplate jdbcTemplate,
+                                  EntityManagerFactory entityManagerFactory,
+                                  @Value("${jpashop.stock.engine.enabled:false}") boolean enabled) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.entityManagerFactory = entityManagerFactory;
+        this.enabled = enabled;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public void remove(Item item, int quantity) {
+        reserve(item, quantity);
+    }
+
+    @Override
+    public void add(Item item, int quantity) {
+        release(item, quantity);
+    }
+
+    public void reserve(Item item, int quantity) {
+        Stock stock = stockOf(item);
+        stock.reserve(quantity);
+        onCompletion(() -> stock.settle(-quantity), () -> stock.change(quantity, true));
+    }
+
+    public void release(Item item, int quantity) {
+        Stock stock = stockOf(item);
+        stock.change(quantity, true);
+        onCompletion(() -> stock.settle(quantity), () -> stock.change(-quantity, true));
+    }
+
+    /**
+     * 관리자가 재고를 직접 수정 (수정 트랜잭션 안에서 새 재고를 엔티티에 쓰기 전에 호출)
+     *
+     * 상품 락을 잡고 아직 반영 안 된 변경량을 꺼냄 - 새 재고가 DB 를 덮어쓰므로 flush 하지 않음
+     * 트랜잭션이 끝날 때까지 락을 유지해서 flush 는 이 상품을 건너뜀 (예약과 완료 처리는 계속 진행)
+     * - 커밋 : 꺼낸 뒤 커밋된 변경량만 새 재고에 더해지도록 가용 재고를 맞춤 (진행 중인 예약은 새 재고에서 빠짐)
+     * - 롤백 : 꺼낸 변경량을 되돌림
+     * 락을 잡기 전에 flush 가 DB 를 바꿨다면 수정 트랜잭션이 읽은 version 이 달라서 커밋이 실패함
+     *
+     * @return 꺼낸 변경량 (수정 전 재고 = DB 재고 + 변경량)
+     */
+    public int reset(Item item, int stockQuantity) {
+        Stock stock = stockOf(item);
+        stock.lock.lock();
+        int base = stock.base;
+        int settled = stock.settled();
+        // 꺼낸 변경량은 수정 트랜잭션의 것이므로 flush/대사에서 빠지도록 기준을 옮김
+        stock.base = settled;
+        onCompletion(() -> {
+            try {
+                stock.adjust(stockQuantity - settled);
+                stock.base = stockQuantity;
+            } finally {
+                stock.lock.unlock();
+            }
+        }, () -> {
+            stock.base = base;
+            stock.lock.unlock();
+        });
+        return settled - base;
+    }
+
+    /**
+     * SQL 로 재고를 직접 늘린 경우(주문 일괄 취소) 커밋 후 카운터만 맞춤
+     * DB 에는 이미 반영됐으므로 변경량은 생기지 않음 (카운터가 없으면 처음 사용할 때 DB 값으로 초기화)
+     */
+    public void restored(Long itemId, int quantity) {
+        onCompletion(() -> {
+            Stock stock = stocks.get(itemId);
+            if (stock == null) {
+                return;
+            }
+            stock.lock.lock();
+            try {
+                stock.adjust(quantity);
+                stock.base += quantity;
+            } finally {
+                stock.lock.unlock();
+            }
+        }, () -> { });
+    }
+
+    public int getAvailable(Long itemId) {
+        Stock stock = stocks.get(itemId);
+        return stock != null ? stock.available() : -1;
+    }
+
+    public int getPendingDelta(Long itemId) {
+        Stock stock = stocks.get(itemId);
+        return stock != null ? stock.settled() - stock.base : 0;
+    }
+
+    /**
+     * 쌓인 변경량을 item 테이블에 반영
+     * 상품 id 순으로 batch UPDATE 를 실행해서 다른 트랜잭션과 락 순서가 엇갈리지 않게 함
+     * version 도 올려서 그 사이 엔티티로 상품을 수정한 트랜잭션은 낙관적 락 충돌로 실패하게 함
+     * 변경량을 DB 에 쓸 때까지 상품 락을 유지해서 그 사이 reset 이 끼어들지 못하게 함
+     * 관리자 수정 중(락을 잡은)인 상품은 건너뜀
+     */
+    @Scheduled(fixedDelayString = "${jpashop.stock.engine.flush-interval-ms:200}")
+    public synchronized void flush() {
+        if (!enabled || stocks.isEmpty()) {
+            return;
+        }
+
+        Map<Long, Integer> deltas = new TreeMap<>();
+        List<Stock> held = new ArrayList<>();
+        try {
+            new TreeMap<>(stocks).forEach((itemId, stock) -> {
+                if (!stock.lock.tryLock()) {
+                    return;
+                }
+                int delta = stock.settled() - stock.base;
+                if (delta == 0) {
+                    stock.lock.unlock();
+                    return;
+                }
+                held.add(stock);
+                deltas.put(itemId, delta);
+            });
+            if (deltas.isEmpty()) {
+                return;
+            }
+
+            List<Object[]> batchArgs = new ArrayList<>(deltas.size());
+            deltas.forEach((itemId, delta) -> batchArgs.add(new Object[]{delta, itemId}));
+            try {
+                jdbcTemplate.batchUpdate("update item set stock_quantity = stock_quantity + ?, version = version + 1 where item_id = ?", batchArgs);
+            } catch (DataAccessException e) {
+                // 기준을 옮기지 않았으므로 다음 flush 때 다시 시도
+                log.error("재고 변경량 반영 실패 items={}", deltas.keySet(), e);
+                return;
+            }
+            deltas.forEach((itemId, delta) -> stocks.get(itemId).base += delta);
+        } finally {
+            held.forEach(stock -> stock.lock.unlock());
+        }
+        // JDBC 로 직접 바꿨기 때문에 2차 캐시의 Item 은 이전 재고를 들고 있음
+        deltas.keySet().forEach(itemId -> entityManagerFactory.getCache().evict(Item.class, itemId));
+    }
+
+    @PreDestroy
+    public void close() {
+        flush();
+    }
+
+    private Stock stockOf(Item item) {
+        return stocks.computeIfAbsent(item.getId(), id -> new Stock(STRIPES, item.getStockQuantity()));
+    }
+
+    // 트랜잭션 안이면 커밋/롤백 이후에, 밖이면 바로 실행
+    private static void onCompletion(Runnable afterCommit, Runnable afterRollback) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            afterCommit.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status == STATUS_COMMITTED) {
+                    afterCommit.run();
+                } else {
+                    afterRollback.run();
+                }
+            }
+        });
+    }
+
+    /**
+     * 한 상품의 재고 칸들
+     * 칸 = 상위 32비트 가용 재고 + 하위 32비트 진행 중 변경량
+     * 재고를 수정해서 진행 중인 예약보다 적어진 경우처럼 가용 재고가 음수가 되면 자기 칸에 음수로 남기고
+     * 재고가 돌아올 때 음수 칸부터 메움
+     * 커밋은 자기 칸의 진행 중 변경량을 되돌리므로 칸마다의 값은 한쪽으로 쌓일 수 있지만 합만 의미가 있음
+     * (int 덧셈은 넘쳐도 합이 int 범위면 맞음)
+     */
+    private static class Stock {
+
+        // 칸 사이를 64 바이트 띄워서 서로 다른 칸의 CAS 가 같은 캐시 라인을 두고 경합하지 않게 함
+        private static final int PAD = 8;
+
+        private final AtomicLongArray cells;
+        private final int mask;
+        // reset/flush/restored 만 잡음
+        private final ReentrantLock lock = new ReentrantLock();
+        // DB 에 반영된 재고 (lock 을 잡고 변경)
+        private volatile int base;
+
+        Stock(int stripes, int quantity) {
+            cells = new AtomicLongArray(stripes * PAD);
+            mask = stripes - 1;
+            base = quantity;
+            for (int i = 0; i < stripes; i++) {
+                cells.set(i * PAD, pack(quantity / stripes + (i < quantity % stripes ? 1 : 0), 0));
+            }
+        }
+
+        /**
+         * 자기 칸부터 돌면서 0 아래로 내려가지 않게 quantity 만큼 뺌
+         * 한 바퀴 돌아도 모자라면 뺀 만큼 돌려놓고, 그 사이 다른 예약이 잠시 들고 있던 재고가 돌아와서
+         * 합계가 충분하면 다시 시도
+         */
+        void reserve(int quantity) {
+            int home = home();
+            for (int attempt = 0; attempt <= mask; attempt++) {
+                int rest = -quantity;
+                for (int i = 0; i <= mask && rest != 0; i++) {
+                    rest -= move((home + i) & mask, rest, true, false);
+                }
+                if (rest == 0) {
+                    return;
+                }
+                change(quantity + rest, true);
+                if (available() < quantity) {
+                    break;
+                }
+            }
+            throw new NotEnoughStockException("need more stock");
+        }
+
+        /**
+         * 재고를 delta 만큼 바꿈 (inFlight 면 진행 중 변경량도 같이)
+         * 늘릴 때는 음수 칸부터 메우고, 줄일 때는 각 칸을 0 까지만 뺀 뒤 남으면 자기 칸에서 뺌
+         */
+        void change(int delta, boolean inFlight) {
+            int home = home();
+            int rest = delta;
+            for (int i = 0; i <= mask && rest != 0; i++) {
+                rest -= move((home + i) & mask, rest, inFlight, false);
+            }
+            if (rest != 0) {
+                move(home, rest, inFlight, true);
+            }
+        }
+
+        // reset/restored 가 DB 기준을 바꿀 때 가용 재고만 맞춤
+        void adjust(int delta) {
+            change(delta, false);
+        }
+
+        // 트랜잭션이 커밋되면 진행 중 변경량만 되돌림 (가용 재고는 이미 반영됨)
+        void settle(int delta) {
+            int index = home() * PAD;
+            while (true) {
+                long cell = cells.get(index);
+                if (cells.compareAndSet(index, cell, pack(availableOf(cell), inFlightOf(cell) - delta))) {
+                    return;
+                }
+            }
+        }
+
+        int available() {
+            int sum = 0;
+            for (int i = 0; i <= mask; i++) {
+                sum += availableOf(cells.get(i * PAD));
+            }
+            return sum;
+        }
+
+        // DB 재고 + 아직 반영 안 된 변경량 (진행 중 변경량은 뺌)
+        // 커밋 외의 변경은 한 칸 안에서 두 값을 같이 바꾸므로 칸을 하나씩 읽어도 커밋 단위로 맞아떨어짐
+        int settled() {
+            int sum = 0;
+            for (int i = 0; i <= mask; i++) {
+                long cell = cells.get(i * PAD);
+                sum += availableOf(cell) - inFlightOf(cell);
+            }
+            return sum;
+        }
+
+        // 한 칸에서 delta 쪽으로 옮길 수 있는 만큼 옮기고 옮긴 양을 돌려줌 (force 면 전부)
+        private int move(int stripe, int delta, boolean inFlight, boolean force) {
+            int index = stripe * PAD;
+            while (true) {
+                long cell = cells.get(index);
+                int available = availableOf(cell);
+                int moved;
+                if (force) {
+                    moved = delta;
+                } else if (delta > 0) {
+                    moved = available < 0 ? Math.min(-available, delta) : 0;
+                } else {
+                    moved = available > 0 ? -Math.min(available, -delta) : 0;
+                }
+                if (moved == 0) {
+                    return 0;
+                }
+                int inFlightDelta = inFlight ? moved : 0;
+                if (cells.compareAndSet(index, cell, pack(available + moved, inFlightOf(cell) + inFlightDelta))) {
+                    return moved;
+                }
+            }
+        }
+
+        private int home() {
+            return Long.hashCode(Thread.currentThread().getId()) & mask;
+        }
+
+        private static long pack(int available, int inFlight) {
+            return ((long) available << 32) | (inFlight & 0xFFFFFFFFL);
+        }
+
+        private static int availableOf(long cell) {
+            return (int) (cell >> 32);
+        }
+
+        private static int inFlightOf(long cell) {
+            return (int) cell;
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package jpabook.jpashop.api;
+
+import jpabook.jpashop.domain.Member;
+import jpabook.jpashop.domain.event.MemberChangedEvent;
+import jpabook.jpashop.repository.MemberNameIndex;
+import jpabook.jpashop.service.MemberService;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.http.HttpHeaders;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.WebApplicationContext;
+
+import javax.persistence.EntityManagerFactory;
+
+import static org.junit.Assert.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+
+// 응답 캐시는 커밋된 데이터만 사용하므로 테스트 트랜잭션 없이 실행
+@RunWith(SpringRunner.class)
+@SpringBootTest
+public class MemberApiEtagTest {
+
+    @Autowired WebApplicationContext context;
+    @Autowired MemberService memberService;
+    @Autowired JdbcTemplate jdbcTemplate;
+    @Autowired EntityManagerFactory emf;
+    @Autowired MemberNameIndex memberNameIndex;
+    @Autowired ApplicationEventPublisher eventPublisher;
+
+    MockMvc mockMvc;
+    Long memberId;
+
+    // 다른 테스트와 같은 스프링 컨텍스트를 쓰도록 @AutoConfigureMockMvc 대신 직접 생성
+    @Before
+    public void setUp() {
+        mockMvc = MockMvcBuilders.webAppContextSetup(context).build();
+    }
+
+    // JDBC 로 지운 회원을 메모리의 회원 목록 캐시와 이름 색인에서도 제거
+    // (이름 블룸 필터는 지울 수 없지만 남은 이름은 DB 중복 조회로 이어질 뿐 결과는 같음)
+    @After
+    public void tearDown() {
+        if (memberId != null) {
+            jdbcTemplate.update("delete from member where member_id = ?", memberId);
+            emf.getCache().evict(Member.class, memberId);
+            memberNameIndex.update(memberId, null);
+            // 주문이 없는 회원이므로 가입과 같이 회원 목록만 무효화
+            eventPublisher.publishEvent(new MemberChangedEvent(memberId, true));
+        }
+    }
+
+    @Test
+    public void 변경없으면_304_가입하면_200() throws Exception {
+        //given
+        String etag = mockMvc.perform(get("/api/v2/members"))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        assertNotNull("ETag 가 있어야 한다.", etag);
+
+        //when
+        int notModified = mockMvc.perform(get("/api/v2/members").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andReturn().getResponse().getStatus();
+
+        Member member = new Member();
+        member.setName("etag-member");
+        memberId = memberService.join(member);
+
+        int modified = mockMvc.perform(get("/api/v2/members").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andReturn().getResponse().getStatus();
+
+        //then
+        assertEquals("바뀐 것이 없으면 304 를 응답해야 한다.", 304, notModified);
+        assertEquals("가입 후에는 새 본문을 응답해야 한다.", 200, modified);
+    }
+}
@@ -0,0 +1,147 @@
+package jpabook.jpashop.api;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jpabook.jpashop.domain.Address;
+import jpabook.jpashop.domain.Delivery;
+import jpabook.jpashop.domain.Member;
+import jpabook.jpashop.domain.Order;
+import jpabook.jpashop.domain.OrderItem;
+import jpabook.jpashop.domain.item.Book;
+import jpabook.jpashop.repository.OrderCursor;
+import jpabook.jpashop.repository.order.query.OrderQueryDto;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.context.WebApplicationContext;
+
+import javax.persistence.EntityManager;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import static java.util.stream.Collectors.toList;
+import static org.junit.Assert.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@Transactional
+public class OrderApiControllerTest {
+
+    @Autowired OrderApiController orderApiController;
+    @Autowired WebApplicationContext context;
+    @Autowired ObjectMapper objectMapper;
+    @Autowired EntityManager em;
+
+    MockMvc mockMvc;
+
+    // 같은 주문시간 2건, 주문시간 없는 주문 2건을 포함해서 InitDb 주문 뒤에 추가
+    @Before
+    public void setUp() {
+        mockMvc = MockMvcBuilders.webAppContextSetup(context).build();
+
+        Member member = new Member();
+        member.setName("cursor");
+        member.setAddress(new Address("서울", "1", "1111"));
+        em.persist(member);
+        Book book = new Book();
+        book.setName("시골 JPA");
+        book.setPrice(10000);
+        book.setStockQuantity(100);
+        em.persist(book);
+
+        LocalDateTime base = LocalDateTime.of(2100, 1, 1, 0, 0);
+        LocalDateTime[] orderDates = {base, base.plusDays(1), base.plusDays(1), null, base.minusDays(1), null, base.plusDays(2)};
+        for (LocalDateTime orderDate : orderDates) {
+            Delivery delivery = new Delivery();
+            delivery.setAddress(member.getAddress());
+            Order order = Order.createOrder(member, delivery, OrderItem.createOrderItem(book, 10000, 1));
+            order.setOrderDate(orderDate);
+            em.persist(order);
+        }
+        em.flush();
+        em.clear();
+    }
+
+    @Test
+    public void 커서로_이어서_조회하면_id순_전체() throws Exception {
+        //given
+        List<Long> expected = em.createQuery("select o.id from Order o order by o.id", Long.class).getResultList();
+
+        //when
+        List<Long> actual = readAll("id");
+
+        //then
+        assertEquals("페이지를 이어 붙이면 빠지거나 겹치는 주문 없이 id 순이어야 한다.", expected, actual);
+    }
+
+    @Test
+    public void 주문시간순_커서는_같은시간과_주문시간없는_주문도_이어서_조회() throws Exception {
+        //given
+        List<Order> orders = em.createQuery("select o from Order o", Order.class).getResultList();
+        List<Long> expected = orders.stream()
+                .sorted(Comparator.comparing(Order::getOrderDate, Comparator.nullsLast(Comparator.reverseOrder()))
+                        .thenComparing(Order::getId, Comparator.reverseOrder()))
+                .map(Order::getId)
+                .collect(toList());
+
+        //when
+        List<Long> actual = readAll("orderDate");
+
+        //then
+        assertEquals("최신순, 같은 시간은 id 역순, 주문시간 없는 주문은 마지막이어야 한다.", expected, actual);
+    }
+
+    @Test
+    public void 잘못된_커서는_400() throws Exception {
+        mockMvc.perform(get("/api/v3.2/orders").param("cursor", "!!!"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/api/v3.2/orders").param("cursor", "SToxMjM0YWJj")) // "I:1234abc"
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void 스트리밍_응답은_V6와_같은_주문을_id순으로() throws Exception {
+        //given
+        List<OrderQueryDto> v6 = orderApiController.ordersV6();
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        //when
+        orderApiController.ordersV6_stream(response);
+
+        //then
+        JsonNode streamed = objectMapper.readTree(response.getContentAsByteArray());
+        List<Long> streamedIds = new ArrayList<>();
+        streamed.forEach(order -> streamedIds.add(order.get("orderId").asLong()));
+        List<Long> expectedIds = v6.stream().map(OrderQueryDto::getOrderId).sorted().collect(toList());
+        assertEquals("주문마다 한 번씩 order_id 순으로 응답해야 한다.", expectedIds, streamedIds);
+
+        for (OrderQueryDto dto : v6) {
+            JsonNode order = streamed.get(expectedIds.indexOf(dto.getOrderId()));
+            assertEquals(dto.getName(), order.get("name").asText());
+            assertEquals("주문상품이 한 주문으로 모여야 한다.", dto.getOrderItems().size(), order.get("orderItems").size());
+        }
+    }
+
+    private List<Long> readAll(String sort) {
+        List<Long> ids = new ArrayList<>();
+        String cursor = null;
+        do {
+            OrderApiController.CursorResult<List<OrderApiController.OrderDto>> page = orderApiController.ordersV3_cursor(cursor, sort, 2);
+            page.getData().forEach(o -> ids.add(o.getOrderId()));
+            cursor = page.getNextCursor();
+            em.clear();
+        } while (cursor != null);
+        return ids;
+    }
+}
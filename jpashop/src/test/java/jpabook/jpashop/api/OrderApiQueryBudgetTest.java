@@ -0,0 +1,54 @@
+package jpabook.jpashop.api;
+
+import jpabook.jpashop.monitoring.QueryBudget;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * 주문 조회 API 의 SQL 수 회귀 테스트 (InitDb 의 주문 2건 기준)
+ * OrderDto, SimpleOrderDto 생성자에서 지연 로딩이 추가되면 예산을 초과해서 실패함
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@Transactional
+public class OrderApiQueryBudgetTest {
+
+    @Autowired OrderSimpleApiController orderSimpleApiController;
+    @Autowired OrderApiController orderApiController;
+
+    @Test
+    @QueryBudget(1)
+    public void 간단주문조회_V3_페치조인() throws Exception {
+        orderSimpleApiController.orderV3();
+    }
+
+    @Test
+    @QueryBudget(1)
+    public void 간단주문조회_V4_DTO직접조회() throws Exception {
+        orderSimpleApiController.orderV4(new MockHttpServletRequest());
+    }
+
+    @Test
+    @QueryBudget(1)
+    public void 주문조회_V3_컬렉션페치조인() throws Exception {
+        orderApiController.ordersV3();
+    }
+
+    @Test
+    @QueryBudget(3)
+    public void 주문조회_V3_1_배치페치() throws Exception {
+        // 주문 + 주문상품(IN) + 상품(IN)
+        orderApiController.ordersV3_page(0, 100);
+    }
+
+    @Test
+    @QueryBudget(2)
+    public void 주문조회_V5_IN절() throws Exception {
+        orderApiController.ordersV5(new MockHttpServletRequest());
+    }
+}
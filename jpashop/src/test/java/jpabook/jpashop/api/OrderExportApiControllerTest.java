@@ -0,0 +1,111 @@
+package jpabook.jpashop.api;
+
+import jpabook.jpashop.domain.Address;
+import jpabook.jpashop.domain.Delivery;
+import jpabook.jpashop.domain.Member;
+import jpabook.jpashop.domain.Order;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.context.WebApplicationContext;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+public class OrderExportApiControllerTest {
+
+    @Autowired WebApplicationContext context;
+    @Autowired PlatformTransactionManager transactionManager;
+    @Autowired EntityManager em;
+    @Autowired EntityManagerFactory emf;
+    @Autowired JdbcTemplate jdbcTemplate;
+
+    MockMvc mockMvc;
+    Order emptyOrder;
+
+    @Before
+    public void setUp() {
+        mockMvc = MockMvcBuilders.webAppContextSetup(context).build();
+    }
+
+    // 내보내기는 읽기 전용 트랜잭션으로 커밋된 주문만 읽으므로 테스트 데이터를 커밋하고 직접 지움
+    @After
+    public void tearDown() {
+        if (emptyOrder != null) {
+            jdbcTemplate.update("delete from orders where order_id = ?", emptyOrder.getId());
+            jdbcTemplate.update("delete from delivery where delivery_id = ?", emptyOrder.getDelivery().getId());
+            jdbcTemplate.update("delete from member where member_id = ?", emptyOrder.getMember().getId());
+            emf.getCache().evict(Member.class, emptyOrder.getMember().getId());
+        }
+    }
+
+    @Test
+    public void 주문상품이_없는_주문도_내보내기() throws Exception {
+        //given
+        emptyOrder = new TransactionTemplate(transactionManager).execute(status -> {
+            Member member = new Member();
+            member.setName("export-empty");
+            member.setAddress(new Address("서울", "1", "1111"));
+            em.persist(member);
+            Delivery delivery = new Delivery();
+            delivery.setAddress(member.getAddress());
+            Order order = Order.createOrder(member, delivery);
+            em.persist(order);
+            return order;
+        });
+
+        //when
+        String ndjson = mockMvc.perform(get("/api/export/orders"))
+                .andReturn().getResponse().getContentAsString(StandardCharsets.UTF_8);
+        String csv = mockMvc.perform(get("/api/export/orders").param("format", "csv"))
+                .andReturn().getResponse().getContentAsString(StandardCharsets.UTF_8);
+
+        //then
+        String line = Arrays.stream(ndjson.split("\n"))
+                .filter(l -> l.contains("\"orderId\":" + emptyOrder.getId() + ","))
+                .findFirst().orElse("");
+        assertTrue("주문상품이 없는 주문도 빈 orderItems 로 내보내야 한다. " + line, line.contains("\"orderItems\":[]"));
+        assertTrue("CSV 에는 상품 칸이 빈 한 줄이어야 한다.", csv.contains("\n" + emptyOrder.getId() + ",export-empty,") && csv.contains(",1111,,,\n"));
+    }
+
+    @Test
+    public void 주문_CSV_내보내기() throws Exception {
+        //when
+        MockHttpServletResponse response = mockMvc.perform(get("/api/export/orders").param("format", "csv"))
+                .andReturn().getResponse();
+        String body = response.getContentAsString(StandardCharsets.UTF_8);
+
+        //then
+        assertEquals(200, response.getStatus());
+        assertTrue("헤더로 시작해야 한다.", body.startsWith("order_id,member_name,"));
+        assertTrue("주문상품마다 한 줄이 있어야 한다.", body.contains(",UserA,") && body.contains(",JPA1 Book,10000,1"));
+    }
+
+    @Test
+    public void 주문_NDJSON_내보내기() throws Exception {
+        //when
+        String body = mockMvc.perform(get("/api/export/orders"))
+                .andReturn().getResponse().getContentAsString(StandardCharsets.UTF_8);
+
+        //then
+        String firstLine = body.split("\n")[0];
+        assertTrue("한 줄에 주문 하나가 주문상품과 함께 있어야 한다.", firstLine.startsWith("{") && firstLine.contains("\"orderItems\""));
+    }
+}
@@ -0,0 +1,129 @@
+package jpabook.jpashop.cache;
+
+import jpabook.jpashop.datasource.ReadYourWrites;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+public class DtoCacheTest {
+
+    @Autowired DtoCache dtoCache;
+
+    @Test
+    public void 무효화_전까지_한번만_로딩() throws Exception {
+        //given
+        AtomicInteger loads = new AtomicInteger();
+
+        //when
+        dtoCache.get("test-dto", () -> List.of(loads.incrementAndGet()));
+        byte[] cached = dtoCache.get("test-dto", () -> List.of(loads.incrementAndGet()));
+        dtoCache.invalidate("test-dto");
+        byte[] reloaded = dtoCache.get("test-dto", () -> List.of(loads.incrementAndGet()));
+
+        //then
+        assertEquals("[1]", new String(cached, StandardCharsets.UTF_8));
+        assertEquals("무효화 후에는 다시 로딩되어야 한다.", "[2]", new String(reloaded, StandardCharsets.UTF_8));
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    public void 로딩은_주DB_읽기전용_트랜잭션() throws Exception {
+        //when
+        byte[] body = dtoCache.get("test-dto-primary", () -> List.of(
+                ReadYourWrites.isPrimaryRequired(), TransactionSynchronizationManager.isCurrentTransactionReadOnly()));
+
+        //then
+        assertEquals("무효화 직후 복제본의 이전 데이터를 새 세대로 저장하지 않도록 주 DB 에서 읽어야 한다.",
+                "[true,true]", new String(body, StandardCharsets.UTF_8));
+        assertFalse("로딩이 끝나면 주 DB 요구를 해제해야 한다.", ReadYourWrites.isPrimaryRequired());
+    }
+
+    @Test
+    public void 동시에_조회해도_한번만_로딩() throws Exception {
+        //given
+        AtomicInteger loads = new AtomicInteger();
+        int threads = 8;
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<byte[]>> futures = new ArrayList<>();
+
+        //when
+        for (int i = 0; i < threads; i++) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                return dtoCache.get("test-dto-single-flight", () -> {
+                    sleep(300);
+                    return List.of(loads.incrementAndGet());
+                });
+            }));
+        }
+        start.countDown();
+        List<String> bodies = new ArrayList<>();
+        for (Future<byte[]> future : futures) {
+            bodies.add(new String(future.get(10, TimeUnit.SECONDS), StandardCharsets.UTF_8));
+        }
+        executor.shutdown();
+
+        //then
+        assertEquals("같은 세대는 한 번만 로딩해야 한다.", 1, loads.get());
+        assertTrue("기다린 요청도 같은 결과를 받아야 한다.", bodies.stream().allMatch("[1]"::equals));
+    }
+
+    @Test
+    public void 로딩이_실패하면_기다린_요청도_같은_예외_후_다시_로딩() throws Exception {
+        //given
+        CountDownLatch loading = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        Future<byte[]> failed = executor.submit(() -> dtoCache.get("test-dto-single-flight-fail", () -> {
+            loading.countDown();
+            sleep(300);
+            throw new IllegalStateException("로딩 실패");
+        }));
+        loading.await();
+
+        //when
+        try {
+            dtoCache.get("test-dto-single-flight-fail", () -> List.of("waiter"));
+            fail("진행 중인 로딩의 예외를 같이 받아야 한다.");
+        } catch (IllegalStateException e) {
+            assertEquals("로딩 실패", e.getMessage());
+        }
+        try {
+            failed.get(10, TimeUnit.SECONDS);
+            fail();
+        } catch (ExecutionException e) {
+            // 예상한 실패
+        }
+        executor.shutdown();
+        byte[] reloaded = dtoCache.get("test-dto-single-flight-fail", () -> List.of("reloaded"));
+
+        //then
+        assertEquals("실패한 로딩은 남지 않고 다음 조회가 다시 로딩해야 한다.", "[\"reloaded\"]", new String(reloaded, StandardCharsets.UTF_8));
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
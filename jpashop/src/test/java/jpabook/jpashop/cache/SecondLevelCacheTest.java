@@ -0,0 +1,115 @@
+package jpabook.jpashop.cache;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import jpabook.jpashop.domain.item.Book;
+import jpabook.jpashop.domain.item.Item;
+import jpabook.jpashop.service.ItemService;
+import jpabook.jpashop.service.StockReservationEngine;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import javax.persistence.EntityManagerFactory;
+
+import static org.junit.Assert.*;
+
+// 2차 캐시는 커밋된 뒤에 채워지므로 테스트 트랜잭션 없이 서비스 트랜잭션으로 실행
+@RunWith(SpringRunner.class)
+@SpringBootTest
+public class SecondLevelCacheTest {
+
+    @Autowired ItemService itemService;
+    @Autowired EntityManagerFactory emf;
+    @Autowired JdbcTemplate jdbcTemplate;
+    @Autowired MeterRegistry meterRegistry;
+
+    Long itemId;
+    Statistics statistics;
+    boolean statisticsEnabled;
+
+    // 하이버네이트 통계는 dev 프로필에서만 켜지므로 이 테스트 동안만 켬
+    @Before
+    public void setUp() {
+        statistics = emf.unwrap(SessionFactory.class).getStatistics();
+        statisticsEnabled = statistics.isStatisticsEnabled();
+        statistics.setStatisticsEnabled(true);
+    }
+
+    @After
+    public void tearDown() {
+        statistics.setStatisticsEnabled(statisticsEnabled);
+        if (itemId != null) {
+            jdbcTemplate.update("delete from stock_movement where item_id = ?", itemId);
+            jdbcTemplate.update("delete from item where item_id = ?", itemId);
+            emf.getCache().evict(Item.class, itemId);
+        }
+    }
+
+    @Test
+    public void 상품조회_2차캐시_히트() throws Exception {
+        //given
+        itemId = saveBook(10);
+        CacheRegionStatistics regionStatistics = statistics.getDomainDataRegionStatistics(CacheRegions.ITEM);
+        long hits = regionStatistics.getHitCount();
+
+        //when
+        Item item = itemService.findOne(itemId);
+
+        //then
+        assertTrue("하위 타입도 캐시되어야 한다.", item instanceof Book);
+        assertEquals("커밋된 상품은 DB 대신 2차 캐시에서 조회되어야 한다.", hits + 1, regionStatistics.getHitCount());
+    }
+
+    @Test
+    public void 하이버네이트_통계없이_영역별_히트_메트릭() throws Exception {
+        //given
+        statistics.setStatisticsEnabled(false);
+        itemId = saveBook(10);
+        itemService.findOne(itemId);
+        double hits = cacheGets(CacheRegions.ITEM, "hit");
+
+        //when
+        itemService.findOne(itemId);
+
+        //then
+        assertEquals("통계를 꺼도 영역별 히트 수를 메트릭으로 볼 수 있어야 한다.", hits + 1, cacheGets(CacheRegions.ITEM, "hit"), 0);
+    }
+
+    @Test
+    public void 재고엔진_반영시_캐시_제거() throws Exception {
+        //given
+        itemId = saveBook(10);
+        StockReservationEngine engine = new StockReservationEngine(jdbcTemplate, emf, true);
+        Item item = itemService.findOne(itemId);
+        assertTrue(emf.getCache().contains(Item.class, itemId));
+
+        //when
+        engine.release(item, 5);
+        engine.flush();
+
+        //then
+        assertFalse("JDBC 로 바꾼 상품은 캐시에서 제거되어야 한다.", emf.getCache().contains(Item.class, itemId));
+        assertEquals(15, itemService.findOne(itemId).getStockQuantity());
+    }
+
+    private double cacheGets(String region, String result) {
+        return meterRegistry.get("cache.gets").tag("cache", region).tag("result", result).functionCounter().count();
+    }
+
+    private Long saveBook(int stockQuantity) {
+        Book book = new Book();
+        book.setName("시골 JPA");
+        book.setPrice(10000);
+        book.setStockQuantity(stockQuantity);
+        itemService.saveItem(book);
+        return book.getId();
+    }
+}
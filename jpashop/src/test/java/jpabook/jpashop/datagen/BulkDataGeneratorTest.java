@@ -0,0 +1,124 @@
+package jpabook.jpashop.datagen;
+
+import jpabook.jpashop.domain.Category;
+import jpabook.jpashop.domain.Member;
+import jpabook.jpashop.domain.Order;
+import jpabook.jpashop.domain.OrderItem;
+import jpabook.jpashop.domain.OrderStatus;
+import jpabook.jpashop.domain.item.Album;
+import jpabook.jpashop.domain.item.Book;
+import jpabook.jpashop.domain.item.Item;
+import jpabook.jpashop.domain.item.Movie;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * 생성기는 SQL 로 직접 insert 하므로 매핑과 컬럼이 어긋나지 않았는지 적은 건수로 만들고 JPA 로 다시 읽어서 확인
+ * 생성한 데이터는 커밋되므로 시작 전 최대 id 보다 큰 row 를 지움
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest
+public class BulkDataGeneratorTest {
+
+    @Autowired EntityManagerFactory emf;
+    @Autowired EntityManager em;
+    @Autowired JdbcTemplate jdbcTemplate;
+    @Autowired PlatformTransactionManager transactionManager;
+
+    long maxCategoryId;
+    long maxMemberId;
+    long maxItemId;
+    long maxDeliveryId;
+    long maxOrderId;
+
+    @Before
+    public void setUp() {
+        maxCategoryId = maxId("category", "category_id");
+        maxMemberId = maxId("member", "member_id");
+        maxItemId = maxId("item", "item_id");
+        maxDeliveryId = maxId("delivery", "delivery_id");
+        maxOrderId = maxId("orders", "order_id");
+    }
+
+    @After
+    public void tearDown() {
+        jdbcTemplate.update("delete from order_item where order_id > ?", maxOrderId);
+        jdbcTemplate.update("delete from orders where order_id > ?", maxOrderId);
+        jdbcTemplate.update("delete from delivery where delivery_id > ?", maxDeliveryId);
+        jdbcTemplate.update("delete from stock_movement where item_id > ?", maxItemId);
+        jdbcTemplate.update("delete from category_item where item_id > ?", maxItemId);
+        jdbcTemplate.update("delete from item where item_id > ?", maxItemId);
+        jdbcTemplate.update("delete from member where member_id > ?", maxMemberId);
+        // 부모는 최상위 카테고리만 되므로 하위 카테고리부터
+        jdbcTemplate.update("delete from category where category_id > ? and parent_id is not null", maxCategoryId);
+        jdbcTemplate.update("delete from category where category_id > ?", maxCategoryId);
+        emf.getCache().evictAll();
+    }
+
+    @Test
+    public void 생성한_데이터를_JPA_로_조회() throws Exception {
+        //given
+        BulkDataGenerator generator = new BulkDataGenerator(emf, 30, 20, 15, 50, 3, 2, 7, 2.0);
+
+        //when
+        generator.run(null);
+
+        //then
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            List<Category> categories = em.createQuery("select c from Category c where c.id > :id", Category.class)
+                    .setParameter("id", maxCategoryId).getResultList();
+            assertEquals(15, categories.size());
+            assertEquals("최상위 카테고리는 10개", 10, categories.stream().filter(c -> c.getParent() == null).count());
+
+            List<Member> members = em.createQuery("select m from Member m where m.id > :id", Member.class)
+                    .setParameter("id", maxMemberId).getResultList();
+            assertEquals(30, members.size());
+            assertTrue(members.stream().allMatch(m -> m.getName().equals("member" + m.getId()) && m.getAddress().getCity() != null));
+
+            List<Item> items = em.createQuery("select i from Item i where i.id > :id", Item.class)
+                    .setParameter("id", maxItemId).getResultList();
+            assertEquals(20, items.size());
+            for (Item item : items) {
+                assertTrue("dtype 이 상품 종류와 맞아야 한다. " + item.getName(),
+                        item instanceof Book && item.getName().startsWith("B-")
+                                || item instanceof Album && item.getName().startsWith("A-")
+                                || item instanceof Movie && item.getName().startsWith("M-"));
+                assertEquals("상품마다 카테고리 하나", 1, item.getCategories().size());
+                assertEquals(1_000_000, item.getStockQuantity());
+            }
+
+            List<Order> orders = em.createQuery("select o from Order o where o.id > :id", Order.class)
+                    .setParameter("id", maxOrderId).getResultList();
+            assertEquals(50, orders.size());
+            for (Order order : orders) {
+                assertTrue(order.getMember().getId() > maxMemberId);
+                assertNotNull(order.getDelivery().getAddress().getCity());
+                assertNotNull(order.getDelivery().getStatus());
+                assertNotNull(order.getOrderDate());
+                assertTrue(order.getStatus() == OrderStatus.ORDER || order.getStatus() == OrderStatus.CANCEL);
+                assertTrue("주문상품은 1~3개", order.getOrderItems().size() >= 1 && order.getOrderItems().size() <= 3);
+                for (OrderItem orderItem : order.getOrderItems()) {
+                    assertEquals("주문 가격은 상품 가격", orderItem.getItem().getPrice(), orderItem.getOrderPrice());
+                }
+            }
+        });
+    }
+
+    private long maxId(String table, String column) {
+        return jdbcTemplate.queryForObject("select coalesce(max(" + column + "), 0) from " + table, Long.class);
+    }
+}
@@ -0,0 +1,171 @@
+package jpabook.jpashop.datasource;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.orm.jpa.EntityManagerHolder;
+import org.springframework.orm.jpa.JpaTransactionManager;
+import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean;
+import org.springframework.orm.jpa.vendor.HibernateJpaVendorAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.sql.DataSource;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * H2 메모리 DB 두 개(주 DB, 복제본)로 라우팅 확인
+ * 각 DB 의 db_role 테이블에 자기 이름을 넣어두고 어느 DB 에서 읽었는지 확인
+ */
+public class ReplicaRoutingDataSourceTest {
+
+    ReplicaRoutingDataSource routingDataSource;
+    TransactionTemplate writeTx;
+    TransactionTemplate readTx;
+    JdbcTemplate jdbcTemplate;
+
+    @Before
+    public void setUp() {
+        DataSource primary = h2("routing_primary");
+        DataSource replica = h2("routing_replica");
+        routingDataSource = new ReplicaRoutingDataSource(primary, Map.of("replica", replica));
+
+        DataSource dataSource = new LazyConnectionDataSourceProxy(routingDataSource);
+        DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(dataSource);
+        writeTx = new TransactionTemplate(transactionManager);
+        readTx = new TransactionTemplate(transactionManager);
+        readTx.setReadOnly(true);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+    }
+
+    @After
+    public void tearDown() {
+        ReadYourWrites.stop();
+    }
+
+    @Test
+    public void 읽기전용_트랜잭션은_복제본() throws Exception {
+        assertEquals("쓰기 트랜잭션은 주 DB", "routing_primary", writeTx.execute(s -> role()));
+        assertEquals("읽기 전용 트랜잭션은 복제본", "routing_replica", readTx.execute(s -> role()));
+        assertEquals("트랜잭션 밖은 주 DB", "routing_primary", role());
+    }
+
+    @Test
+    public void 사용할수없는_복제본은_제외() throws Exception {
+        //given
+        routingDataSource.getReplicas().get(0).update(false, 10_000);
+
+        //when
+        String role = readTx.execute(s -> role());
+
+        //then
+        assertEquals("사용 가능한 복제본이 없으면 주 DB", "routing_primary", role);
+    }
+
+    @Test
+    public void 쓰기후_읽기는_주DB() throws Exception {
+        //given
+        int[] written = new int[1];
+        ReadYourWrites.start(false, () -> written[0]++);
+        assertEquals("routing_replica", readTx.execute(s -> role()));
+
+        //when
+        writeTx.execute(s -> role());
+        writeTx.execute(s -> role());
+
+        //then
+        assertEquals("쓰기 후 같은 요청의 읽기는 주 DB", "routing_primary", readTx.execute(s -> role()));
+        assertEquals("첫 쓰기에서만 콜백 실행", 1, written[0]);
+    }
+
+    @Test
+    public void 주DB_요구는_닫으면_해제() throws Exception {
+        //when
+        try (ReadYourWrites.Scope scope = ReadYourWrites.requirePrimary()) {
+            assertEquals("routing_primary", readTx.execute(s -> role()));
+        }
+
+        //then
+        assertFalse("범위 밖에서 만든 Context 는 닫으면 지워진다.", ReadYourWrites.isPrimaryRequired());
+        assertEquals("routing_replica", readTx.execute(s -> role()));
+    }
+
+    @Test
+    public void 범위안의_주DB_요구는_닫으면_이전값() throws Exception {
+        //given
+        ReadYourWrites.start(false, null);
+
+        //when
+        try (ReadYourWrites.Scope scope = ReadYourWrites.requirePrimary()) {
+            assertTrue(ReadYourWrites.isPrimaryRequired());
+        }
+
+        //then
+        assertFalse(ReadYourWrites.isPrimaryRequired());
+    }
+
+    @Test
+    public void 한_EntityManager_에서_읽기후_쓰기는_주DB() throws Exception {
+        //given - open-in-view 처럼 요청 동안 EntityManager 하나를 스레드에 묶어 둠
+        Map<String, Object> properties = new HashMap<>();
+        new RoutingDataSourceConfig().releaseConnectionAfterTransaction().customize(properties);
+        LocalContainerEntityManagerFactoryBean factoryBean = new LocalContainerEntityManagerFactoryBean();
+        factoryBean.setDataSource(new LazyConnectionDataSourceProxy(routingDataSource));
+        factoryBean.setJpaVendorAdapter(new HibernateJpaVendorAdapter());
+        factoryBean.setPackagesToScan(getClass().getPackageName());
+        factoryBean.setJpaPropertyMap(properties);
+        factoryBean.afterPropertiesSet();
+        EntityManagerFactory emf = factoryBean.getObject();
+
+        JpaTransactionManager transactionManager = new JpaTransactionManager(emf);
+        TransactionTemplate jpaWriteTx = new TransactionTemplate(transactionManager);
+        TransactionTemplate jpaReadTx = new TransactionTemplate(transactionManager);
+        jpaReadTx.setReadOnly(true);
+        EntityManager em = emf.createEntityManager();
+        TransactionSynchronizationManager.bindResource(emf, new EntityManagerHolder(em));
+
+        try {
+            //when
+            String read = jpaReadTx.execute(s -> role(em));
+            String write = jpaWriteTx.execute(s -> role(em));
+            String readAgain = jpaReadTx.execute(s -> role(em));
+
+            //then
+            assertEquals("읽기 전용 트랜잭션은 복제본", "routing_replica", read);
+            assertEquals("같은 EntityManager 라도 쓰기 트랜잭션은 주 DB", "routing_primary", write);
+            assertEquals("트랜잭션마다 커넥션을 다시 고름", "routing_replica", readAgain);
+        } finally {
+            TransactionSynchronizationManager.unbindResource(emf);
+            em.close();
+            factoryBean.destroy();
+        }
+    }
+
+    private static String role(EntityManager em) {
+        return (String) em.createNativeQuery("select name from db_role").getSingleResult();
+    }
+
+    private String role() {
+        return jdbcTemplate.queryForObject("select name from db_role", String.class);
+    }
+
+    private static DataSource h2(String name) {
+        DataSource dataSource = new DriverManagerDataSource("jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1", "sa", "");
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("create table if not exists db_role (name varchar(50))");
+        jdbcTemplate.update("delete from db_role");
+        jdbcTemplate.update("insert into db_role values (?)", name);
+        return dataSource;
+    }
+}
@@ -0,0 +1,50 @@
+package jpabook.jpashop.domain;
+
+import jpabook.jpashop.monitoring.QueryCount;
+import jpabook.jpashop.monitoring.QueryCountHolder;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@Transactional
+public class BatchInsertTest {
+
+    @Autowired EntityManager em;
+
+    @Test
+    public void 회원_여러명_저장시_insert_batch_한번() throws Exception {
+        QueryCountHolder.start();
+        QueryCount queryCount;
+        try {
+            for (int i = 0; i < 10; i++) {
+                Member member = new Member();
+                member.setName("batch" + i);
+                member.setAddress(new Address("서울", "독산동", "1234"));
+                em.persist(member);
+            }
+            em.flush();
+        } finally {
+            queryCount = QueryCountHolder.stop();
+        }
+
+        assertEquals("insert 는 batch 한 번으로 실행되어야 한다.", 1, count(queryCount.getShapes(), "insert into member"));
+        assertTrue("시퀀스는 할당 크기마다 한 번만 호출되어야 한다.", count(queryCount.getShapes(), "member_seq") <= 1);
+    }
+
+    private static int count(Map<String, Integer> shapes, String keyword) {
+        return shapes.entrySet().stream()
+                .filter(e -> e.getKey().toLowerCase().contains(keyword))
+                .mapToInt(Map.Entry::getValue)
+                .sum();
+    }
+}
@@ -0,0 +1,90 @@
+package jpabook.jpashop.domain;
+
+import jpabook.jpashop.api.OrderApiController;
+import jpabook.jpashop.domain.item.Book;
+import jpabook.jpashop.monitoring.QueryBudget;
+import jpabook.jpashop.monitoring.QueryCount;
+import jpabook.jpashop.monitoring.QueryCountHolder;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+
+import static org.junit.Assert.*;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@Transactional
+public class DeliveryLazyLoadingTest {
+
+    @Autowired EntityManager em;
+    @Autowired OrderApiController orderApiController;
+
+    @Test
+    public void 배송_조회시_주문_조회안함() throws Exception {
+        Long deliveryId = createOrder().getDelivery().getId();
+        em.flush();
+        em.clear();
+
+        QueryCountHolder.start();
+        Delivery delivery;
+        QueryCount findCount;
+        try {
+            delivery = em.find(Delivery.class, deliveryId);
+        } finally {
+            findCount = QueryCountHolder.stop();
+        }
+        assertEquals("배송만 조회해야 한다. (주문 추가 조회 없음)", 1, findCount.getTotal());
+
+        QueryCountHolder.start();
+        Order order;
+        QueryCount accessCount;
+        try {
+            order = delivery.getOrder();
+        } finally {
+            accessCount = QueryCountHolder.stop();
+        }
+        assertNotNull(order);
+        assertEquals("주문은 접근할 때 조회해야 한다.", 1, accessCount.getTotal());
+    }
+
+    /**
+     * 주문 목록에서 배송을 지연 로딩하는 API (InitDb 의 주문 2건 기준)
+     * 주문 + 회원(IN) + 배송(IN) + 주문상품(IN) + 상품(IN)
+     * 바이트코드 향상이 없으면 배송마다 주문을 다시 조회해서 예산을 초과함
+     */
+    @Test
+    @QueryBudget(5)
+    public void 주문조회_V1_배송_지연로딩() throws Exception {
+        assertFalse(orderApiController.ordersV1().isEmpty());
+    }
+
+    @Test
+    @QueryBudget(5)
+    public void 주문조회_V2_배송_지연로딩() throws Exception {
+        assertFalse(orderApiController.ordersV2().isEmpty());
+    }
+
+    private Order createOrder() {
+        Member member = new Member();
+        member.setName("회원1");
+        member.setAddress(new Address("서울", "독산동", "1234-1234"));
+        em.persist(member);
+
+        Book book = new Book();
+        book.setName("시골 JPA");
+        book.setPrice(10000);
+        book.setStockQuantity(10);
+        em.persist(book);
+
+        Delivery delivery = new Delivery();
+        delivery.setAddress(member.getAddress());
+        Order order = Order.createOrder(member, delivery, OrderItem.createOrderItem(book, 10000, 1));
+        em.persist(order);
+        return order;
+    }
+}
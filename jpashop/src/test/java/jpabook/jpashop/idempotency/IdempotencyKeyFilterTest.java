@@ -0,0 +1,242 @@
+package jpabook.jpashop.idempotency;
+
+import jpabook.jpashop.domain.Member;
+import jpabook.jpashop.domain.item.Book;
+import jpabook.jpashop.exception.OutcomeUnknownException;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.context.WebApplicationContext;
+
+import javax.persistence.EntityManager;
+import javax.servlet.ReadListener;
+import javax.servlet.ServletInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.UUID;
+
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@Transactional
+public class IdempotencyKeyFilterTest {
+
+    @Autowired WebApplicationContext context;
+    @Autowired IdempotencyKeyFilter idempotencyKeyFilter;
+    @Autowired IdempotencyStore idempotencyStore;
+    @Autowired EntityManager em;
+    @Autowired JdbcTemplate jdbcTemplate;
+
+    MockMvc mockMvc;
+    Long memberId;
+    Long itemId;
+
+    @Before
+    public void setUp() {
+        mockMvc = MockMvcBuilders.webAppContextSetup(context).addFilters(idempotencyKeyFilter).build();
+
+        Member member = new Member();
+        member.setName("idempotency-" + UUID.randomUUID());
+        em.persist(member);
+        Book book = new Book();
+        book.setName("시골 JPA");
+        book.setPrice(10000);
+        book.setStockQuantity(10);
+        em.persist(book);
+        memberId = member.getId();
+        itemId = book.getId();
+    }
+
+    @Test
+    public void 같은_키로_재시도하면_저장된_응답() throws Exception {
+        //given
+        String key = UUID.randomUUID().toString();
+        MockHttpServletResponse first = order(key, 2);
+        long orders = countOrders();
+
+        //when
+        MockHttpServletResponse retry = order(key, 2);
+
+        //then
+        assertEquals(200, first.getStatus());
+        assertEquals("재시도는 첫 응답을 그대로 돌려준다.", first.getContentAsString(), retry.getContentAsString());
+        assertEquals("true", retry.getHeader(IdempotencyKeyFilter.REPLAYED_HEADER));
+        assertEquals("재시도로 주문이 추가되면 안된다.", orders, countOrders());
+        assertEquals("재고는 한 번만 줄어야 한다.", 8, em.find(Book.class, itemId).getStockQuantity());
+    }
+
+    @Test
+    public void 같은_키로_다른_요청은_422() throws Exception {
+        //given
+        String key = UUID.randomUUID().toString();
+        order(key, 1);
+
+        //when
+        MockHttpServletResponse other = order(key, 3);
+
+        //then
+        assertEquals(422, other.getStatus());
+    }
+
+    @Test
+    public void 처리중_선점이_만료되면_같은_요청이_이어받음() throws Exception {
+        //given
+        String key = UUID.randomUUID().toString();
+        IdempotencyStore store = new IdempotencyStore(jdbcTemplate, Duration.ofHours(24), 10, Duration.ofMillis(50));
+        assertTrue(store.claim(key, "fingerprint"));
+
+        //when
+        boolean beforeTimeout = store.claim(key, "fingerprint");
+        Thread.sleep(100);
+        boolean otherRequest = store.claim(key, "other");
+        boolean sameRequest = store.claim(key, "fingerprint");
+
+        //then
+        assertFalse("선점이 유효하면 이어받을 수 없다.", beforeTimeout);
+        assertFalse("다른 요청은 만료된 선점도 이어받을 수 없다.", otherRequest);
+        assertTrue("같은 요청의 재시도는 만료된 선점을 이어받는다.", sameRequest);
+        assertFalse("이어받은 선점은 다시 유효하다.", store.claim(key, "fingerprint"));
+    }
+
+    @Test
+    public void 반영되지_않은_실패는_선점_해제() throws Exception {
+        //given
+        String key = UUID.randomUUID().toString();
+
+        //when
+        failRequest(key, () -> {
+            throw new IllegalArgumentException("검증 실패");
+        });
+
+        //then
+        assertNull("롤백된 실패는 재시도가 다시 처리할 수 있어야 한다.", idempotencyStore.find(key));
+    }
+
+    @Test
+    public void 결과를_알수없는_실패는_처리중으로_유지() throws Exception {
+        //given
+        String key = UUID.randomUUID().toString();
+
+        //when
+        failRequest(key, () -> {
+            throw new OutcomeUnknownException("주문 처리 대기 시간 초과 (처리 중이라 주문 여부를 알 수 없음)", null);
+        });
+
+        //then
+        StoredResponse stored = idempotencyStore.find(key);
+        assertNotNull("결과를 모르면 선점을 풀면 안 된다.", stored);
+        assertTrue(stored.isInProgress());
+    }
+
+    @Test
+    public void 커밋된_뒤의_실패는_선점을_풀거나_이어받지_않음() throws Exception {
+        //given
+        String key = UUID.randomUUID().toString();
+        IdempotencyStore store = new IdempotencyStore(jdbcTemplate, Duration.ofHours(24), 10, Duration.ofMillis(50));
+
+        //when
+        String fingerprint = failRequest(key, () -> {
+            // 주문 트랜잭션 안에서 남기는 반영 표시
+            idempotencyStore.markApplied(IdempotencyKeyHolder.get());
+            throw new IllegalStateException("커밋 후 응답 실패");
+        });
+        Thread.sleep(100);
+
+        //then
+        assertNotNull("처리가 반영된 키는 선점을 풀면 안 된다.", idempotencyStore.find(key));
+        assertFalse("만료돼도 반영된 키는 재시도가 이어받으면 안 된다.", store.claim(key, fingerprint));
+        assertNull("요청이 끝나면 키를 비워야 한다.", IdempotencyKeyHolder.get());
+    }
+
+    @Test
+    public void 해시하려고_읽은_본문을_비동기로_다시_읽기() throws Exception {
+        //given
+        IdempotencyStore store = mock(IdempotencyStore.class);
+        when(store.claim(any(), any())).thenReturn(true);
+        IdempotencyKeyFilter filter = new IdempotencyKeyFilter(store, new String[]{"/api/"});
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/v1/orders");
+        request.addHeader(IdempotencyKeyFilter.IDEMPOTENCY_KEY_HEADER, UUID.randomUUID().toString());
+        request.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        request.setContent("{\"memberId\":1}".getBytes(StandardCharsets.UTF_8));
+        ByteArrayOutputStream read = new ByteArrayOutputStream();
+        boolean[] allDataRead = new boolean[1];
+
+        //when
+        filter.doFilter(request, new MockHttpServletResponse(), (req, res) -> {
+            ServletInputStream in = req.getInputStream();
+            in.setReadListener(new ReadListener() {
+                @Override
+                public void onDataAvailable() throws IOException {
+                    byte[] buffer = new byte[4];
+                    int n;
+                    while (in.isReady() && !in.isFinished() && (n = in.read(buffer, 0, buffer.length)) > 0) {
+                        read.write(buffer, 0, n);
+                    }
+                }
+
+                @Override
+                public void onAllDataRead() {
+                    allDataRead[0] = true;
+                }
+
+                @Override
+                public void onError(Throwable t) {
+                    fail(t.getMessage());
+                }
+            });
+        });
+
+        //then
+        assertEquals("{\"memberId\":1}", read.toString(StandardCharsets.UTF_8));
+        assertTrue(allDataRead[0]);
+    }
+
+    // 선점한 뒤 failure 를 던지는 요청을 보내고 요청 fingerprint 를 돌려줌
+    private String failRequest(String key, Runnable failure) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/v1/orders");
+        request.addHeader(IdempotencyKeyFilter.IDEMPOTENCY_KEY_HEADER, key);
+        request.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        request.setContent("{}".getBytes(StandardCharsets.UTF_8));
+        String[] fingerprint = new String[1];
+        try {
+            idempotencyKeyFilter.doFilter(request, new MockHttpServletResponse(), (req, res) -> {
+                fingerprint[0] = idempotencyStore.find(key).getFingerprint();
+                failure.run();
+            });
+            fail("처리 중 예외가 전달되어야 한다.");
+        } catch (RuntimeException e) {
+            // 예상한 실패
+        }
+        return fingerprint[0];
+    }
+
+    private MockHttpServletResponse order(String key, int count) throws Exception {
+        String body = "{\"memberId\":" + memberId + ",\"items\":[{\"itemId\":" + itemId + ",\"count\":" + count + "}]}";
+        return mockMvc.perform(post("/api/v1/orders")
+                        .header(IdempotencyKeyFilter.IDEMPOTENCY_KEY_HEADER, key)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(body))
+                .andReturn().getResponse();
+    }
+
+    private long countOrders() {
+        return em.createQuery("select count(o) from Order o", Long.class).getSingleResult();
+    }
+}
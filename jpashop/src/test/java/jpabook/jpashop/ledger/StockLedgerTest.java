@@ -0,0 +1,89 @@
+package jpabook.jpashop.ledger;
+
+import jpabook.jpashop.domain.item.Book;
+import jpabook.jpashop.domain.item.Item;
+import jpabook.jpashop.service.ItemService;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import javax.persistence.EntityManagerFactory;
+import java.time.Duration;
+
+import static org.junit.Assert.*;
+
+// 원장은 커밋 직전에 기록되므로 테스트 트랜잭션 없이 서비스 트랜잭션으로 실행
+@RunWith(SpringRunner.class)
+@SpringBootTest
+public class StockLedgerTest {
+
+    @Autowired ItemService itemService;
+    @Autowired StockLedger stockLedger;
+    @Autowired StockReconciler stockReconciler;
+    @Autowired JdbcTemplate jdbcTemplate;
+    @Autowired EntityManagerFactory emf;
+
+    Long itemId;
+
+    @After
+    public void tearDown() {
+        if (itemId != null) {
+            jdbcTemplate.update("delete from stock_snapshot where item_id = ?", itemId);
+            jdbcTemplate.update("delete from stock_movement where item_id = ?", itemId);
+            jdbcTemplate.update("delete from item where item_id = ?", itemId);
+            emf.getCache().evict(Item.class, itemId);
+        }
+    }
+
+    @Test
+    public void 등록_수정_원장과_스냅샷() throws Exception {
+        //given
+        itemId = saveBook(10);
+
+        //when
+        itemService.updateItem(itemId, "원장 JPA", 10000, 15);
+
+        //then
+        assertEquals("원장 합계는 현재 재고와 같아야 한다.", 15, stockLedger.currentStock(itemId));
+
+        Thread.sleep(10);
+        String otherSnapshots = otherSnapshots();
+        new StockLedger(jdbcTemplate, true, Duration.ZERO).snapshot(itemId);
+        assertEquals("스냅샷은 원장 합계", Long.valueOf(15),
+                jdbcTemplate.queryForObject("select quantity from stock_snapshot where item_id = ?", Long.class, itemId));
+        assertEquals("스냅샷 이후에도 같은 재고", 15, stockLedger.currentStock(itemId));
+        assertEquals("다른 상품의 스냅샷은 건드리지 않는다.", otherSnapshots, otherSnapshots());
+    }
+
+    @Test
+    public void 원장없이_바뀐_재고는_대사에서_발견() throws Exception {
+        //given
+        itemId = saveBook(10);
+        assertTrue(stockReconciler.reconcile().getMismatches().stream().noneMatch(m -> m.getItemId() == itemId));
+
+        //when
+        jdbcTemplate.update("update item set stock_quantity = 7 where item_id = ?", itemId);
+
+        //then
+        assertTrue("원장과 다른 재고가 보고되어야 한다.", stockReconciler.reconcile().getMismatches().stream()
+                .anyMatch(m -> m.getItemId() == itemId && m.getStockQuantity() == 7 && m.getLedgerQuantity() == 10));
+    }
+
+    private String otherSnapshots() {
+        return String.valueOf(jdbcTemplate.queryForList(
+                "select item_id, quantity, last_movement_id from stock_snapshot where item_id <> ? order by item_id", itemId));
+    }
+
+    private Long saveBook(int stockQuantity) {
+        Book book = new Book();
+        book.setName("원장 JPA");
+        book.setPrice(10000);
+        book.setStockQuantity(stockQuantity);
+        itemService.saveItem(book);
+        return book.getId();
+    }
+}
@@ -0,0 +1,16 @@
+package jpabook.jpashop.monitoring;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 테스트 메서드에서 실행될 수 있는 최대 SQL 수
+ * 초과하면 실행된 SQL 모양과 횟수를 담아서 테스트 실패 (N+1 회귀 방지)
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface QueryBudget {
+    int value();
+}
@@ -0,0 +1,37 @@
+package jpabook.jpashop.monitoring;
+
+import org.springframework.test.context.TestContext;
+import org.springframework.test.context.support.AbstractTestExecutionListener;
+
+/**
+ * @QueryBudget 이 붙은 테스트 메서드의 SQL 수 검사
+ * META-INF/spring.factories 로 모든 스프링 테스트에 등록됨
+ */
+public class QueryBudgetTestExecutionListener extends AbstractTestExecutionListener {
+
+    @Override
+    public void beforeTestMethod(TestContext testContext) {
+        if (testContext.getTestMethod().isAnnotationPresent(QueryBudget.class)) {
+            QueryCountHolder.start();
+        }
+    }
+
+    @Override
+    public void afterTestMethod(TestContext testContext) {
+        QueryBudget budget = testContext.getTestMethod().getAnnotation(QueryBudget.class);
+        if (budget == null) {
+            return;
+        }
+        QueryCount queryCount = QueryCountHolder.stop();
+        if (queryCount == null) {
+            throw new AssertionError("SQL 집계가 없음 (테스트 중에 집계가 먼저 종료됨)");
+        }
+        if (queryCount.getTotal() > budget.value()) {
+            StringBuilder message = new StringBuilder()
+                    .append("SQL 실행 수 초과 budget=").append(budget.value())
+                    .append(" actual=").append(queryCount.getTotal());
+            queryCount.getShapes().forEach((shape, count) -> message.append("\n  ").append(count).append("x ").append(shape));
+            throw new AssertionError(message.toString());
+        }
+    }
+}
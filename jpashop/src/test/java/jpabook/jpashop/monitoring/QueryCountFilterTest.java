@@ -0,0 +1,98 @@
+package jpabook.jpashop.monitoring;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import javax.servlet.ServletResponse;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+public class QueryCountFilterTest {
+
+    QueryCountFilter filter = new QueryCountFilter(new SimpleMeterRegistry(), true, 3, 16);
+
+    @Test
+    public void 작은_응답은_헤더_추가() throws Exception {
+        //given
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        //when
+        filter.doFilter(new MockHttpServletRequest("GET", "/api/v2/members"), response,
+                (req, res) -> res.getWriter().write("small"));
+
+        //then
+        assertEquals("0", response.getHeader(QueryCountFilter.QUERY_COUNT_HEADER));
+        assertEquals("small", response.getContentAsString());
+    }
+
+    @Test
+    public void 버퍼보다_큰_응답은_헤더없이_바로_전송() throws Exception {
+        //given
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        //when
+        filter.doFilter(new MockHttpServletRequest("GET", "/api/export/orders"), response, (req, res) -> {
+            res.getOutputStream().write("0123456789".getBytes());
+            res.getOutputStream().write("0123456789".getBytes());
+            assertTrue("버퍼를 넘으면 원래 응답으로 내보내야 한다.", ((MockHttpServletResponse) unwrap(res)).getContentAsByteArray().length > 0);
+        });
+
+        //then
+        assertNull(response.getHeader(QueryCountFilter.QUERY_COUNT_HEADER));
+        assertEquals("01234567890123456789", response.getContentAsString());
+    }
+
+    @Test
+    public void 비동기_응답은_헤더없이_나중에_쓴_본문_전송() throws Exception {
+        //given
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/v6.1/orders");
+        request.setAsyncSupported(true);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        AtomicReference<ServletResponse> asyncResponse = new AtomicReference<>();
+
+        //when
+        filter.doFilter(request, response, (req, res) -> {
+            req.startAsync();
+            asyncResponse.set(res);
+        });
+        asyncResponse.get().getOutputStream().write("stream".getBytes());
+
+        //then
+        assertNull(response.getHeader(QueryCountFilter.QUERY_COUNT_HEADER));
+        assertEquals("stream", response.getContentAsString());
+    }
+
+    @Test
+    public void 바깥_집계안에서_요청해도_바깥_집계_유지() throws Exception {
+        //given
+        QueryCount outer = QueryCountHolder.start();
+        AtomicReference<QueryCount> inner = new AtomicReference<>();
+
+        //when
+        QueryCount stopped;
+        try {
+            filter.doFilter(new MockHttpServletRequest("GET", "/api/v2/members"), new MockHttpServletResponse(), (req, res) -> {
+                inner.set(QueryCountHolder.get());
+                inner.get().record("select * from member", 0);
+            });
+            assertSame("요청이 끝나면 바깥 집계로 되돌아가야 한다.", outer, QueryCountHolder.get());
+        } finally {
+            stopped = QueryCountHolder.stop();
+        }
+
+        //then
+        assertSame(outer, stopped);
+        assertNotSame("요청은 자기 집계를 써야 한다.", outer, inner.get());
+        assertEquals(1, inner.get().getTotal());
+        assertEquals("요청 안의 SQL 은 바깥 집계에도 기록되어야 한다.", 1, outer.getTotal());
+        assertNull(QueryCountHolder.get());
+        assertNull("진행 중인 집계가 없으면 null", QueryCountHolder.stop());
+    }
+
+    private static ServletResponse unwrap(ServletResponse response) {
+        return ((QueryCountResponseWrapper) response).getResponse();
+    }
+}
@@ -0,0 +1,87 @@
+package jpabook.jpashop.repository;
+
+import org.junit.Test;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class MemberNameFilterTest {
+
+    @Test
+    public void 초기화와_가입한_이름은_항상_있을수도_있음() throws Exception {
+        //given
+        List<String> existing = names("member-", 10000);
+        MemberNameFilter filter = warmUp(existing, 10000, 0.01);
+        List<String> joined = names("joined-", 1000);
+
+        //when
+        joined.forEach(filter::put);
+
+        //then
+        for (String name : existing) {
+            assertTrue("DB 에 있는 이름은 없다고 하면 안 된다. " + name, filter.mightContain(name));
+        }
+        for (String name : joined) {
+            assertTrue("가입한 이름은 없다고 하면 안 된다. " + name, filter.mightContain(name));
+        }
+    }
+
+    @Test
+    public void 없는_이름의_오탐률은_설정값_근처() throws Exception {
+        //given
+        MemberNameFilter filter = warmUp(names("member-", 10000), 10000, 0.01);
+
+        //when
+        long falsePositives = names("unknown-", 10000).stream().filter(filter::mightContain).count();
+
+        //then
+        assertTrue("오탐률이 1% 근처여야 한다. count=" + falsePositives, falsePositives < 300);
+    }
+
+    @Test
+    public void 예상보다_많이_넣어도_없다고_하지않음() throws Exception {
+        //given
+        List<String> names = names("member-", 5000);
+
+        //when
+        MemberNameFilter filter = warmUp(names, 100, 0.01);
+
+        //then
+        assertTrue(names.stream().allMatch(filter::mightContain));
+    }
+
+    @Test
+    public void 초기화_전에는_항상_DB_조회() throws Exception {
+        //given
+        MemberNameFilter filter = new MemberNameFilter(entityManager(List.of()), 1000, 0.01);
+
+        //then
+        assertTrue("초기화 전에는 없다고 하면 안 된다.", filter.mightContain("anyone"));
+    }
+
+    private static MemberNameFilter warmUp(List<String> names, long expectedInsertions, double falsePositiveProbability) {
+        MemberNameFilter filter = new MemberNameFilter(entityManager(names), expectedInsertions, falsePositiveProbability);
+        filter.warmUp();
+        return filter;
+    }
+
+    private static EntityManager entityManager(List<String> names) {
+        EntityManager em = mock(EntityManager.class, RETURNS_DEEP_STUBS);
+        when(em.createQuery("select m.name from Member m", String.class).getResultStream()).thenReturn(names.stream());
+        return em;
+    }
+
+    private static List<String> names(String prefix, int count) {
+        List<String> names = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            names.add(prefix + i);
+        }
+        return names;
+    }
+}
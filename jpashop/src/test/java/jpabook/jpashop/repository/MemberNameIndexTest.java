@@ -0,0 +1,117 @@
+package jpabook.jpashop.repository;
+
+import org.junit.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.persistence.EntityManager;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class MemberNameIndexTest {
+
+    @Test
+    public void 조각이_모두_들어있고_이름에_검색어가_있는_회원만() throws Exception {
+        //given
+        MemberNameIndex index = warmUp(1000, new Object[]{1L, "kimjpa"}, new Object[]{2L, "jpalee"},
+                new Object[]{3L, "parkjp"}, new Object[]{4L, "abcxbcd"});
+
+        //when
+        Set<Long> jpa = index.findMemberIds("jpa");
+        Set<Long> mjpa = index.findMemberIds("mjpa");
+        Set<Long> abcd = index.findMemberIds("abcd");
+
+        //then
+        assertEquals(Set.of(1L, 2L), jpa);
+        assertEquals("조각 목록의 교집합만 후보가 되어야 한다.", Set.of(1L), mjpa);
+        assertEquals("조각(abc, bcd)이 모두 있어도 이름에 검색어가 없으면 제외해야 한다.", Set.of(), abcd);
+    }
+
+    @Test
+    public void 후보가_max_candidates_를_넘으면_like_검색() throws Exception {
+        //given
+        MemberNameIndex index = warmUp(2, new Object[]{1L, "jpa1"}, new Object[]{2L, "jpa2"}, new Object[]{3L, "jpa3"});
+
+        //when
+        Set<Long> ids = index.findMemberIds("jpa");
+
+        //then
+        assertNull("후보가 너무 많으면 null 을 돌려서 like 로 검색해야 한다.", ids);
+        assertEquals(Set.of(1L), index.findMemberIds("jpa1"));
+    }
+
+    @Test
+    public void 검색어가_3글자_미만이거나_초기화_전이면_like_검색() throws Exception {
+        //given
+        MemberNameIndex notReady = new MemberNameIndex(entityManager(), true, 1000);
+        MemberNameIndex index = warmUp(1000, new Object[]{1L, "kimjpa"});
+
+        //then
+        assertNull(index.findMemberIds("jp"));
+        assertNull(index.findMemberIds(""));
+        assertNull("초기화 전에는 색인을 쓰면 안 된다.", notReady.findMemberIds("jpa"));
+    }
+
+    @Test
+    public void 가입_이름변경_삭제는_커밋_후에만_반영() throws Exception {
+        //given
+        MemberNameIndex index = warmUp(1000, new Object[]{1L, "kimjpa"}, new Object[]{2L, "jpalee"});
+
+        //when
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            index.update(3L, "newjpa");
+            index.update(1L, "choi");
+            index.update(2L, null);
+            assertEquals("커밋 전에는 반영되면 안 된다.", Set.of(1L, 2L), index.findMemberIds("jpa"));
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        //then
+        assertEquals("이전 이름의 조각은 빠지고 가입한 회원은 들어가야 한다.", Set.of(3L), index.findMemberIds("jpa"));
+        assertEquals(Set.of(1L), index.findMemberIds("cho"));
+        assertEquals("삭제한 회원은 어떤 검색에도 나오면 안 된다.", Set.of(), index.findMemberIds("lee"));
+    }
+
+    @Test
+    public void 롤백되면_반영안함() throws Exception {
+        //given
+        MemberNameIndex index = warmUp(1000, new Object[]{1L, "kimjpa"});
+
+        //when
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            index.update(1L, "choi");
+            TransactionSynchronizationManager.getSynchronizations()
+                    .forEach(s -> s.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        //then
+        assertEquals(Set.of(1L), index.findMemberIds("jpa"));
+        assertEquals(Set.of(), index.findMemberIds("cho"));
+    }
+
+    private static MemberNameIndex warmUp(int maxCandidates, Object[]... members) {
+        EntityManager em = entityManager(members);
+        MemberNameIndex index = new MemberNameIndex(em, true, maxCandidates);
+        index.warmUp();
+        return index;
+    }
+
+    private static EntityManager entityManager(Object[]... members) {
+        EntityManager em = mock(EntityManager.class, RETURNS_DEEP_STUBS);
+        List<Object[]> rows = Arrays.asList(members);
+        when(em.createQuery("select m.id, m.name from Member m", Object[].class).getResultList()).thenReturn(rows);
+        return em;
+    }
+}
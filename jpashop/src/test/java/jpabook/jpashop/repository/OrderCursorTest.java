@@ -0,0 +1,57 @@
+package jpabook.jpashop.repository;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+
+import static org.junit.Assert.*;
+
+public class OrderCursorTest {
+
+    @Test
+    public void 커서_토큰_복원() throws Exception {
+        //given
+        LocalDateTime orderDate = LocalDateTime.of(2024, 1, 2, 3, 4, 5, 6000);
+
+        //when
+        OrderCursor byId = OrderCursor.decode(OrderCursor.after(OrderCursor.Sort.ID, 10L, orderDate).encode());
+        OrderCursor byDate = OrderCursor.decode(OrderCursor.after(OrderCursor.Sort.ORDER_DATE, 11L, orderDate).encode());
+
+        //then
+        assertEquals(OrderCursor.Sort.ID, byId.getSort());
+        assertEquals(Long.valueOf(10), byId.getOrderId());
+        assertEquals(OrderCursor.Sort.ORDER_DATE, byDate.getSort());
+        assertEquals(Long.valueOf(11), byDate.getOrderId());
+        assertEquals(orderDate, byDate.getOrderDate());
+    }
+
+    @Test
+    public void 주문시간_없는_주문의_커서() throws Exception {
+        //when
+        OrderCursor cursor = OrderCursor.decode(OrderCursor.after(OrderCursor.Sort.ORDER_DATE, 12L, null).encode());
+
+        //then
+        assertEquals(OrderCursor.Sort.ORDER_DATE, cursor.getSort());
+        assertEquals(Long.valueOf(12), cursor.getOrderId());
+        assertNull("주문시간이 없는 주문 다음부터 이어서 조회해야 한다.", cursor.getOrderDate());
+    }
+
+    @Test
+    public void 잘못된_커서_예외() throws Exception {
+        String[] tokens = {"!!!", token("X:1"), token("I:abc"), token("I:null"), token("D:2024-13-01T00:00:00:1"), token("D:null:1")};
+        for (String token : tokens) {
+            try {
+                OrderCursor.decode(token);
+                fail("잘못된 커서는 예외가 발생해야 한다. " + token);
+            } catch (IllegalArgumentException e) {
+                assertEquals("잘못된 커서입니다.", e.getMessage());
+            }
+        }
+    }
+
+    private static String token(String raw) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,160 @@
+package jpabook.jpashop.repository;
+
+import jpabook.jpashop.domain.Address;
+import jpabook.jpashop.domain.Delivery;
+import jpabook.jpashop.domain.Member;
+import jpabook.jpashop.domain.Order;
+import jpabook.jpashop.domain.OrderItem;
+import jpabook.jpashop.domain.OrderStatus;
+import jpabook.jpashop.domain.item.Book;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static java.util.stream.Collectors.toList;
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+// 이름 색인 결과를 정하기 위해 색인만 흉내 내고 검색은 실제 DB 로 실행
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@Transactional
+public class OrderRepositorySearchTest {
+
+    @Autowired EntityManager em;
+
+    MemberNameIndex memberNameIndex = mock(MemberNameIndex.class);
+    OrderRepository orderRepository;
+
+    Member kim;
+    Member lee;
+    List<Long> kimOrderIds = new ArrayList<>();
+
+    // kim 주문 3건 (마지막 건 취소), lee 주문 1건
+    @Before
+    public void setUp() {
+        orderRepository = new OrderRepository(em, memberNameIndex);
+        when(memberNameIndex.findMemberIds(anyString())).thenReturn(null);
+
+        kim = createMember("search-kim");
+        lee = createMember("search-lee");
+        Book book = new Book();
+        book.setName("시골 JPA");
+        book.setPrice(10000);
+        book.setStockQuantity(100);
+        em.persist(book);
+
+        LocalDateTime base = LocalDateTime.of(2100, 1, 1, 0, 0);
+        for (int i = 0; i < 3; i++) {
+            Order order = createOrder(kim, book, base.minusDays(i));
+            if (i == 2) {
+                order.setStatus(OrderStatus.CANCEL);
+            }
+            kimOrderIds.add(order.getId());
+        }
+        createOrder(lee, book, base.plusDays(1));
+        em.flush();
+        em.clear();
+    }
+
+    @Test
+    public void 상태와_이름_조건_like_검색() throws Exception {
+        //when
+        List<Long> ids = ids(search("search-k", OrderStatus.ORDER, null, OrderSearch.Sort.ID_ASC));
+
+        //then
+        assertEquals(kimOrderIds.subList(0, 2), ids);
+    }
+
+    @Test
+    public void 이름_색인으로_찾은_회원의_주문만() throws Exception {
+        //given
+        when(memberNameIndex.findMemberIds("search")).thenReturn(Set.of(lee.getId()));
+
+        //when
+        List<Order> orders = search("search", null, null, null);
+
+        //then
+        assertEquals("색인이 돌려준 회원 id 로만 검색해야 한다.", 1, orders.size());
+        assertEquals(lee.getId(), orders.get(0).getMember().getId());
+    }
+
+    @Test
+    public void 이름_색인에_후보가_없으면_조회하지_않음() throws Exception {
+        //given
+        when(memberNameIndex.findMemberIds("nobody")).thenReturn(Set.of());
+
+        //then
+        assertTrue(search("nobody", null, null, null).isEmpty());
+    }
+
+    @Test
+    public void 정렬_조건() throws Exception {
+        //when
+        List<Long> idDesc = ids(search("search-kim", null, null, OrderSearch.Sort.ID_DESC));
+        List<Long> dateDesc = ids(search("search-", null, null, OrderSearch.Sort.ORDER_DATE_DESC));
+
+        //then
+        List<Long> expectedIdDesc = new ArrayList<>(kimOrderIds);
+        expectedIdDesc.sort((a, b) -> Long.compare(b, a));
+        assertEquals(expectedIdDesc, idDesc);
+        assertEquals("주문시간이 가장 늦은 lee 의 주문이 먼저여야 한다.", lee.getId(),
+                em.find(Order.class, dateDesc.get(0)).getMember().getId());
+        assertEquals(kimOrderIds, dateDesc.subList(1, 4));
+    }
+
+    @Test
+    public void 결과_수는_max_results_를_넘지_않음() throws Exception {
+        //given
+        ReflectionTestUtils.setField(orderRepository, "maxResults", 2);
+
+        //then
+        assertEquals("limit 만큼만 조회해야 한다.", 1, search("search-", null, 1, OrderSearch.Sort.ID_ASC).size());
+        assertEquals("limit 이 max-results 보다 크면 max-results 까지만", 2, search("search-", null, 100, OrderSearch.Sort.ID_ASC).size());
+        assertEquals("limit 이 없으면 max-results 까지만", 2, search("search-", null, null, OrderSearch.Sort.ID_ASC).size());
+        assertEquals("limit 이 0 이하이면 max-results 까지만", 2, search("search-", null, 0, OrderSearch.Sort.ID_ASC).size());
+    }
+
+    private List<Order> search(String memberName, OrderStatus status, Integer limit, OrderSearch.Sort sort) {
+        OrderSearch orderSearch = new OrderSearch();
+        orderSearch.setMemberName(memberName);
+        orderSearch.setOrderStatus(status);
+        orderSearch.setLimit(limit);
+        orderSearch.setSort(sort);
+        return orderRepository.search(orderSearch);
+    }
+
+    private static List<Long> ids(List<Order> orders) {
+        return orders.stream().map(Order::getId).collect(toList());
+    }
+
+    private Member createMember(String name) {
+        Member member = new Member();
+        member.setName(name);
+        member.setAddress(new Address("서울", "1", "1111"));
+        em.persist(member);
+        return member;
+    }
+
+    private Order createOrder(Member member, Book book, LocalDateTime orderDate) {
+        Delivery delivery = new Delivery();
+        delivery.setAddress(member.getAddress());
+        Order order = Order.createOrder(member, delivery, OrderItem.createOrderItem(book, 10000, 1));
+        order.setOrderDate(orderDate);
+        em.persist(order);
+        return order;
+    }
+}
@@ -0,0 +1,52 @@
+package jpabook.jpashop.repository.order.query;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class LongObjectMapTest {
+
+    @Test
+    public void 늘어나도_모든_키_조회() throws Exception {
+        //given
+        LongObjectMap<String> map = new LongObjectMap<>(4);
+
+        //when
+        for (long key = 0; key < 10_000; key++) {
+            map.put(key * 31, "v" + key);
+        }
+
+        //then
+        assertEquals(10_000, map.size());
+        for (long key = 0; key < 10_000; key++) {
+            assertEquals("v" + key, map.get(key * 31));
+        }
+        assertNull("없는 키는 null 이어야 한다.", map.get(-1L));
+    }
+
+    @Test
+    public void 같은_키는_같은_목록에_추가() throws Exception {
+        //given
+        LongObjectMap<List<Integer>> map = new LongObjectMap<>();
+
+        //when
+        map.computeIfAbsent(7L, k -> new ArrayList<>()).add(1);
+        map.computeIfAbsent(7L, k -> new ArrayList<>()).add(2);
+
+        //then
+        assertEquals(1, map.size());
+        assertEquals(List.of(1, 2), map.get(7L));
+    }
+
+    @Test
+    public void 예상크기가_커도_용량은_넘치지_않음() throws Exception {
+        assertEquals(16, LongObjectMap.capacityFor(5));
+        assertEquals(8, LongObjectMap.capacityFor(-1));
+        assertEquals("expectedSize * 2 가 int 를 넘으면 최대 용량", LongObjectMap.MAX_CAPACITY, LongObjectMap.capacityFor(Integer.MAX_VALUE));
+        assertEquals(LongObjectMap.MAX_CAPACITY, LongObjectMap.capacityFor(LongObjectMap.MAX_CAPACITY / 2));
+        assertEquals(LongObjectMap.MAX_CAPACITY, LongObjectMap.capacityFor(LongObjectMap.MAX_CAPACITY / 2 - 1));
+    }
+}
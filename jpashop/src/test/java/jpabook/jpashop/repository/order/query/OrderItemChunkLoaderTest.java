@@ -0,0 +1,64 @@
+package jpabook.jpashop.repository.order.query;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+// 동시 조회는 새 EntityManager(다른 커넥션)로 읽으므로 테스트 트랜잭션 없이 커밋된 주문(InitDb)으로 실행
+@RunWith(SpringRunner.class)
+@SpringBootTest
+public class OrderItemChunkLoaderTest {
+
+    @Autowired EntityManagerFactory emf;
+    @Autowired EntityManager em;
+
+    OrderItemChunkLoader parallel;
+
+    @After
+    public void tearDown() {
+        if (parallel != null) {
+            parallel.close();
+        }
+    }
+
+    @Test
+    public void 나눠서_동시에_조회해도_한번에_조회한_결과와_같음() throws Exception {
+        //given
+        List<Long> orderIds = new ArrayList<>(em.createQuery("select o.id from Order o", Long.class).getResultList());
+        assertTrue("주문이 둘 이상이어야 덩어리가 나뉜다.", orderIds.size() >= 2);
+        // 없는 주문 id 를 섞어서 덩어리 수를 스레드 수보다 많게 (결과가 없는 덩어리 포함)
+        for (long missing = -1; missing >= -10; missing--) {
+            orderIds.add(missing);
+        }
+        OrderItemChunkLoader single = new OrderItemChunkLoader(emf, orderIds.size(), 1);
+        parallel = new OrderItemChunkLoader(emf, 1, 4);
+
+        //when
+        LongObjectMap<List<OrderItemQueryDto>> expected = single.load(em, orderIds);
+        LongObjectMap<List<OrderItemQueryDto>> actual = parallel.load(em, orderIds);
+
+        //then
+        assertEquals("주문상품이 있는 주문 수가 같아야 한다.", expected.size(), actual.size());
+        for (Long orderId : orderIds) {
+            List<OrderItemQueryDto> expectedItems = expected.get(orderId);
+            List<OrderItemQueryDto> actualItems = actual.get(orderId);
+            if (expectedItems == null) {
+                assertNull(actualItems);
+                continue;
+            }
+            assertEquals("덩어리 사이에 주문상품이 빠지거나 겹치면 안 된다. orderId=" + orderId, expectedItems.size(), actualItems.size());
+            assertEquals(new HashSet<>(expectedItems), new HashSet<>(actualItems));
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package jpabook.jpashop.repository.order.simplequery;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Comparator;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@Transactional
+public class OrderSimpleJdbcRepositoryTest {
+
+    @Autowired OrderSimpleJdbcRepository orderSimpleJdbcRepository;
+    @Autowired OrderSimpleQueryRepository orderSimpleQueryRepository;
+
+    @Test
+    public void JDBC_조회결과_V4와_같음() throws Exception {
+        //when
+        List<OrderSimpleQueryDto> jdbc = orderSimpleJdbcRepository.findOrderDtos();
+        List<OrderSimpleQueryDto> jpql = orderSimpleQueryRepository.findOrderDtos();
+        jdbc.sort(Comparator.comparing(OrderSimpleQueryDto::getOrderId));
+        jpql.sort(Comparator.comparing(OrderSimpleQueryDto::getOrderId));
+
+        //then
+        assertEquals(jpql.size(), jdbc.size());
+        for (int i = 0; i < jpql.size(); i++) {
+            assertEquals(jpql.get(i).getOrderId(), jdbc.get(i).getOrderId());
+            assertEquals(jpql.get(i).getName(), jdbc.get(i).getName());
+            assertEquals(jpql.get(i).getOrderDate(), jdbc.get(i).getOrderDate());
+            assertEquals(jpql.get(i).getOrderStatus(), jdbc.get(i).getOrderStatus());
+            assertEquals("주소도 같아야 한다.", jpql.get(i).getAddress().getCity(), jdbc.get(i).getAddress().getCity());
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package jpabook.jpashop.service;
+
+import jpabook.jpashop.domain.Member;
+import jpabook.jpashop.domain.event.MemberChangedEvent;
+import jpabook.jpashop.repository.MemberNameIndex;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+// 두 가입 트랜잭션이 겹쳐야 하므로 테스트 트랜잭션 없이 실행
+@RunWith(SpringRunner.class)
+@SpringBootTest
+public class MemberServiceDuplicateJoinTest {
+
+    @Autowired MemberService memberService;
+    @Autowired PlatformTransactionManager transactionManager;
+    @Autowired JdbcTemplate jdbcTemplate;
+    @Autowired EntityManagerFactory emf;
+    @Autowired MemberNameIndex memberNameIndex;
+    @Autowired ApplicationEventPublisher eventPublisher;
+
+    String name = "duplicate-" + UUID.randomUUID();
+
+    @After
+    public void tearDown() {
+        List<Long> ids = jdbcTemplate.queryForList("select member_id from member where name = ?", Long.class, name);
+        for (Long id : ids) {
+            jdbcTemplate.update("delete from member where member_id = ?", id);
+            emf.getCache().evict(Member.class, id);
+            memberNameIndex.update(id, null);
+            eventPublisher.publishEvent(new MemberChangedEvent(id, true));
+        }
+    }
+
+    @Test
+    public void 동시에_같은_이름으로_가입하면_유니크_제약으로_중복_예외() throws Exception {
+        //given
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        CountDownLatch inserted = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+
+        //when
+        // 먼저 가입한 트랜잭션이 insert 후 커밋하기 전에 두 번째 가입이 중복 조회를 통과하고 insert
+        Future<Long> first = executor.submit(() -> transactionTemplate.execute(status -> {
+            Long id = memberService.join(member(name));
+            inserted.countDown();
+            sleep(500);
+            return id;
+        }));
+        Future<Long> second = executor.submit(() -> {
+            inserted.await();
+            return memberService.join(member(name));
+        });
+        executor.shutdown();
+
+        //then
+        assertNotNull(first.get(10, TimeUnit.SECONDS));
+        try {
+            second.get(10, TimeUnit.SECONDS);
+            fail("같은 이름의 두 번째 가입은 실패해야 한다.");
+        } catch (ExecutionException e) {
+            assertTrue("유니크 제약 위반은 IllegalStateException 으로 바뀌어야 한다.", e.getCause() instanceof IllegalStateException);
+            assertEquals("이미 존재하는 회원입니다.", e.getCause().getMessage());
+            assertTrue("조회가 아니라 uk_member_name 으로 막혀야 한다.", e.getCause().getCause() instanceof DataIntegrityViolationException);
+        }
+        assertEquals(Integer.valueOf(1), jdbcTemplate.queryForObject("select count(*) from member where name = ?", Integer.class, name));
+    }
+
+    private static Member member(String name) {
+        Member member = new Member();
+        member.setName(name);
+        return member;
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
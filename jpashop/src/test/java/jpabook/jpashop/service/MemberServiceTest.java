@@ -52,4 +52,21 @@ public class MemberServiceTest {
         //then
         fail("예외가 발생해야 한다.");
     }
-}
\ No newline at end of file
+
+    @Test(expected = IllegalStateException.class)
+    public void 이름_변경_중복_예외() throws Exception{
+        //given
+        Member member = new Member();
+        member.setName("kim");
+        Member member2 = new Member();
+        member2.setName("lee");
+        memberService.join(member);
+        Long savedId2 = memberService.join(member2);
+
+        //when
+        memberService.update(savedId2, "kim");
+
+        //then
+        fail("유니크 제약 위반은 IllegalStateException 이어야 한다.");
+    }
+}
@@ -0,0 +1,102 @@
+package jpabook.jpashop.service;
+
+import jpabook.jpashop.exception.NotEnoughStockException;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class OrderPipelineTest {
+
+    OrderService orderService = mock(OrderService.class);
+    CountDownLatch release = new CountDownLatch(1);
+    OrderPipeline pipeline = new OrderPipeline(orderService, true, 50, 5, 100, 100);
+
+    @After
+    public void tearDown() throws Exception {
+        release.countDown();
+        pipeline.stop();
+    }
+
+    @Test
+    public void 중지후_주문_거부() throws Exception {
+        //given
+        pipeline.start();
+        pipeline.stop();
+
+        //when
+        try {
+            pipeline.order(1L, 1L, 1);
+            fail("중지된 파이프라인은 주문을 거부해야 한다.");
+        } catch (IllegalStateException e) {
+            //then
+            assertEquals("주문 파이프라인이 중지되었습니다.", e.getMessage());
+        }
+    }
+
+    @Test
+    public void 결과_대기_시간초과() throws Exception {
+        //given
+        when(orderService.orderBatch(anyList())).thenAnswer(invocation -> {
+            release.await(10, TimeUnit.SECONDS);
+            throw new IllegalStateException("batch 실패");
+        });
+        pipeline.start();
+
+        //when
+        long start = System.nanoTime();
+        try {
+            pipeline.order(1L, 1L, 1);
+            fail("결과를 기다리는 시간은 result-timeout-ms 를 넘으면 안 된다.");
+        } catch (IllegalStateException e) {
+            //then
+            assertTrue(e.getMessage().startsWith("주문 처리 대기 시간 초과"));
+        }
+        assertTrue("제한 시간 안에 돌아와야 한다.", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 5000);
+    }
+
+    @Test
+    public void 배치_결과를_각_요청자에게_전달() throws Exception {
+        //given
+        when(orderService.orderBatch(anyList())).thenAnswer(invocation -> {
+            List<OrderCommand> commands = invocation.getArgument(0);
+            List<OrderResult> results = new ArrayList<>();
+            for (OrderCommand command : commands) {
+                results.add(command.getCount() > 10
+                        ? OrderResult.failure(new NotEnoughStockException("need more stock"))
+                        : OrderResult.success((long) command.getCount()));
+            }
+            return results;
+        });
+        pipeline.start();
+        ExecutorService callers = Executors.newFixedThreadPool(3);
+
+        //when
+        Future<Long> first = callers.submit(() -> pipeline.order(1L, 1L, 1));
+        Future<Long> failed = callers.submit(() -> pipeline.order(1L, 1L, 11));
+        Future<Long> second = callers.submit(() -> pipeline.order(1L, 1L, 2));
+        callers.shutdown();
+
+        //then
+        assertEquals(Long.valueOf(1), first.get(5, TimeUnit.SECONDS));
+        assertEquals(Long.valueOf(2), second.get(5, TimeUnit.SECONDS));
+        try {
+            failed.get(5, TimeUnit.SECONDS);
+            fail("실패한 주문의 요청자만 예외를 받아야 한다.");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof NotEnoughStockException);
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package jpabook.jpashop.service;
+
+import jpabook.jpashop.domain.item.Book;
+import jpabook.jpashop.domain.item.Item;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+// 재시도마다 새 트랜잭션을 시작해야 하므로 테스트 트랜잭션 없이 실행
+@RunWith(SpringRunner.class)
+@SpringBootTest
+public class OrderRetryExecutorConflictTest {
+
+    @Autowired OrderRetryExecutor retryExecutor;
+    @Autowired PlatformTransactionManager transactionManager;
+    @Autowired EntityManager em;
+    @Autowired EntityManagerFactory emf;
+    @Autowired JdbcTemplate jdbcTemplate;
+
+    Long itemId;
+
+    @After
+    public void tearDown() {
+        if (itemId != null) {
+            jdbcTemplate.update("delete from item where item_id = ?", itemId);
+            emf.getCache().evict(Item.class, itemId);
+        }
+    }
+
+    @Test
+    public void 상품_version_충돌하면_새_트랜잭션으로_재시도() throws Exception {
+        //given
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        itemId = transactionTemplate.execute(status -> {
+            Book book = new Book();
+            book.setName("시골 JPA");
+            book.setPrice(10000);
+            book.setStockQuantity(10);
+            em.persist(book);
+            return book.getId();
+        });
+        AtomicInteger attempts = new AtomicInteger();
+        ExecutorService other = Executors.newSingleThreadExecutor();
+
+        //when
+        try {
+            retryExecutor.execute("order", itemId, () -> {
+                Item item = em.find(Item.class, itemId);
+                if (attempts.incrementAndGet() == 1) {
+                    // 첫 시도가 상품을 읽은 뒤 다른 트랜잭션이 먼저 재고를 바꾸고 커밋
+                    try {
+                        other.submit(() -> transactionTemplate.executeWithoutResult(
+                                status -> em.find(Item.class, itemId).removeStock(3))).get();
+                    } catch (InterruptedException | ExecutionException e) {
+                        throw new IllegalStateException(e);
+                    }
+                }
+                item.removeStock(1);
+                return null;
+            });
+        } finally {
+            other.shutdown();
+        }
+
+        //then
+        assertEquals("첫 시도는 version 충돌로 실패하고 재시도가 성공해야 한다.", 2, attempts.get());
+        assertEquals("두 트랜잭션의 재고 변경이 모두 반영되어야 한다.", Integer.valueOf(6),
+                jdbcTemplate.queryForObject("select stock_quantity from item where item_id = ?", Integer.class, itemId));
+        assertEquals(Long.valueOf(2), jdbcTemplate.queryForObject("select version from item where item_id = ?", Long.class, itemId));
+    }
+}
@@ -0,0 +1,98 @@
+package jpabook.jpashop.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Test;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class OrderRetryExecutorTest {
+
+    SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    OrderRetryExecutor executor = new OrderRetryExecutor(new NoOpTransactionManager(), meterRegistry, 3, 0, 0, 2);
+
+    @Test
+    public void 충돌하면_재시도() throws Exception {
+        //given
+        AtomicInteger calls = new AtomicInteger();
+
+        //when
+        Long result = executor.execute("order", 7L, () -> {
+            if (calls.incrementAndGet() < 3) {
+                throw new OptimisticLockingFailureException("conflict");
+            }
+            return 1L;
+        });
+
+        //then
+        assertEquals(Long.valueOf(1L), result);
+        assertEquals("시도 수", 3.0, meterRegistry.get("jpashop.order.optimistic_lock.attempts").counter().count(), 0);
+        assertEquals("엔티티별 충돌 수", 2.0, meterRegistry.get("jpashop.order.optimistic_lock.conflicts")
+                .tag("entity", "Item").counter().count(), 0);
+        assertEquals("상품별 충돌 수", Long.valueOf(2), executor.getTopConflicts(10).get("Item#7"));
+    }
+
+    @Test
+    public void 최대_시도를_넘으면_예외() throws Exception {
+        //given
+        AtomicInteger calls = new AtomicInteger();
+
+        //when
+        try {
+            executor.execute("order", 7L, () -> {
+                calls.incrementAndGet();
+                throw new OptimisticLockingFailureException("conflict");
+            });
+            fail("max-attempts 를 넘으면 충돌 예외가 발생해야 한다.");
+        } catch (OptimisticLockingFailureException e) {
+        }
+
+        //then
+        assertEquals("max-attempts 만큼만 시도", 3, calls.get());
+    }
+
+    @Test
+    public void 충돌_상위_항목만_유지() throws Exception {
+        //given
+        AtomicInteger calls = new AtomicInteger();
+        for (long itemId : new long[]{1L, 1L, 1L, 2L, 3L}) {
+            try {
+                executor.execute("order", itemId, () -> {
+                    calls.incrementAndGet();
+                    throw new OptimisticLockingFailureException("conflict");
+                });
+            } catch (OptimisticLockingFailureException e) {
+            }
+        }
+
+        //when
+        Map<String, Long> top = executor.getTopConflicts(10);
+
+        //then
+        assertEquals("top-conflicts 개만 유지", 2, top.size());
+        assertEquals("가장 많이 충돌한 상품이 먼저", "Item#1", top.keySet().iterator().next());
+        assertEquals("밀어낸 항목의 수 + 1 부터 셈", Long.valueOf(6), top.get("Item#3"));
+    }
+
+    static class NoOpTransactionManager implements PlatformTransactionManager {
+        @Override
+        public TransactionStatus getTransaction(TransactionDefinition definition) {
+            return new SimpleTransactionStatus();
+        }
+
+        @Override
+        public void commit(TransactionStatus status) {
+        }
+
+        @Override
+        public void rollback(TransactionStatus status) {
+        }
+    }
+}
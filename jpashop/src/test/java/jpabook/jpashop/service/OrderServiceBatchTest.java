@@ -0,0 +1,154 @@
+package jpabook.jpashop.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jpabook.jpashop.domain.Member;
+import jpabook.jpashop.domain.Order;
+import jpabook.jpashop.domain.item.Book;
+import jpabook.jpashop.exception.NotEnoughStockException;
+import jpabook.jpashop.idempotency.IdempotencyStore;
+import jpabook.jpashop.ledger.StockLedger;
+import jpabook.jpashop.repository.ItemRepository;
+import jpabook.jpashop.repository.MemberRepository;
+import jpabook.jpashop.repository.OrderCancelRepository;
+import jpabook.jpashop.repository.OrderRepository;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.*;
+
+// 배치가 트랜잭션을 몇 번 시작/커밋하는지 세기 위해 트랜잭션 매니저와 저장소를 흉내 냄
+public class OrderServiceBatchTest {
+
+    CountingTransactionManager transactionManager = new CountingTransactionManager();
+    OrderRepository orderRepository = mock(OrderRepository.class);
+    MemberRepository memberRepository = mock(MemberRepository.class);
+    ItemRepository itemRepository = mock(ItemRepository.class);
+    OrderService orderService = new OrderService(orderRepository, memberRepository, itemRepository,
+            mock(StockReservationEngine.class), mock(ApplicationEventPublisher.class),
+            new OrderRetryExecutor(transactionManager, new SimpleMeterRegistry(), 3, 0, 0, 10),
+            mock(OrderCancelRepository.class), mock(StockLedger.class), mock(IdempotencyStore.class));
+
+    AtomicLong orderIds = new AtomicLong();
+
+    @Before
+    public void setUp() {
+        when(memberRepository.findOne(anyLong())).thenReturn(new Member());
+        // 시도마다 새 트랜잭션에서 읽은 것처럼 재고 10 인 상품을 새로 돌려줌
+        when(itemRepository.findOne(anyLong())).thenAnswer(invocation -> createBook(invocation.getArgument(0)));
+        doAnswer(invocation -> {
+            ((Order) invocation.getArgument(0)).setId(orderIds.incrementAndGet());
+            return null;
+        }).when(orderRepository).save(any(Order.class));
+    }
+
+    @Test
+    public void 배치는_한_트랜잭션으로_커밋() throws Exception {
+        //when
+        List<OrderResult> results = orderService.orderBatch(commands(1, 2, 3));
+
+        //then
+        assertEquals("배치 전체가 트랜잭션 하나여야 한다.", 1, transactionManager.begins.get());
+        assertEquals(1, transactionManager.commits.get());
+        assertTrue(results.stream().allMatch(OrderResult::isSuccess));
+    }
+
+    @Test
+    public void 충돌하면_배치_전체를_새_트랜잭션으로_재시도() throws Exception {
+        //given
+        transactionManager.conflicts.set(1);
+
+        //when
+        List<OrderResult> results = orderService.orderBatch(commands(1, 2, 3));
+
+        //then
+        assertEquals("충돌한 배치만 한 번 더 시작해야 한다. (주문마다 따로 처리하지 않음)", 2, transactionManager.begins.get());
+        assertEquals(1, transactionManager.commits.get());
+        assertEquals("재시도한 배치의 결과를 돌려준다.", Arrays.asList(4L, 5L, 6L),
+                Arrays.asList(results.get(0).getOrderId(), results.get(1).getOrderId(), results.get(2).getOrderId()));
+    }
+
+    @Test
+    public void 재시도를_다_쓰면_충돌_예외() throws Exception {
+        //given
+        transactionManager.conflicts.set(3);
+
+        //when
+        try {
+            orderService.orderBatch(commands(1, 2));
+            fail("max-attempts 를 넘으면 충돌 예외가 발생해야 한다.");
+        } catch (OptimisticLockingFailureException e) {
+            //then
+            assertEquals(3, transactionManager.begins.get());
+            assertEquals(0, transactionManager.commits.get());
+        }
+    }
+
+    @Test
+    public void 실패한_주문만_그_요청자의_결과로() throws Exception {
+        //when
+        List<OrderResult> results = orderService.orderBatch(commands(1, 11, 2));
+
+        //then
+        assertEquals("실패한 주문이 있어도 나머지와 같이 한 번만 커밋해야 한다.", 1, transactionManager.commits.get());
+        assertTrue(results.get(0).isSuccess());
+        assertTrue("재고가 모자란 주문만 실패해야 한다.", results.get(1).getException() instanceof NotEnoughStockException);
+        assertTrue(results.get(2).isSuccess());
+        assertEquals(Long.valueOf(2), results.get(2).getOrderId());
+    }
+
+    private static List<OrderCommand> commands(int... counts) {
+        OrderCommand[] commands = new OrderCommand[counts.length];
+        for (int i = 0; i < counts.length; i++) {
+            commands[i] = new OrderCommand(1L, (long) i + 1, counts[i], null);
+        }
+        return Arrays.asList(commands);
+    }
+
+    private static Book createBook(Long id) {
+        Book book = new Book();
+        book.setId(id);
+        book.setName("시골 JPA");
+        book.setPrice(10000);
+        book.setStockQuantity(10);
+        return book;
+    }
+
+    // 시작/커밋 수를 세고, conflicts 번은 커밋할 때 version 충돌로 실패
+    static class CountingTransactionManager implements PlatformTransactionManager {
+        final AtomicInteger begins = new AtomicInteger();
+        final AtomicInteger commits = new AtomicInteger();
+        final AtomicInteger conflicts = new AtomicInteger();
+
+        @Override
+        public TransactionStatus getTransaction(TransactionDefinition definition) {
+            begins.incrementAndGet();
+            return new SimpleTransactionStatus();
+        }
+
+        @Override
+        public void commit(TransactionStatus status) {
+            if (conflicts.getAndDecrement() > 0) {
+                throw new OptimisticLockingFailureException("conflict");
+            }
+            commits.incrementAndGet();
+        }
+
+        @Override
+        public void rollback(TransactionStatus status) {
+        }
+    }
+}
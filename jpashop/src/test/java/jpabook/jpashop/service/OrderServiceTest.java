@@ -9,6 +9,7 @@ import jpabook.jpashop.domain.item.Item;
 import jpabook.jpashop.exception.NotEnoughStockException;
 import jpabook.jpashop.repository.OrderRepository;
 import static org.junit.Assert.*;
+import org.hibernate.Hibernate;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -17,6 +18,10 @@ import org.springframework.test.context.junit4.SpringRunner;
 import org.springframework.transaction.annotation.Transactional;
 
 import javax.persistence.EntityManager;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 @RunWith(SpringRunner.class)
 @SpringBootTest
@@ -49,6 +54,28 @@ public class OrderServiceTest {
         assertEquals("주문 수량만큼 재고가 줄어야 한다.", 8, book.getStockQuantity());
     }
 
+    @Test
+    public void 장바구니주문() throws Exception{
+        // given
+        Member member = createMember();
+        Book book1 = createBook(10000, 10, "시골 JPA");
+        Book book2 = createBook(20000, 5, "시골 Spring");
+        Map<Long, Integer> itemCounts = new LinkedHashMap<>();
+        itemCounts.put(book2.getId(), 1);
+        itemCounts.put(book1.getId(), 3);
+
+        // when
+        Long orderId = orderService.order(member.getId(), itemCounts);
+
+        // then
+        Order getOrder = orderRepository.findOne(orderId);
+        assertEquals("주문한 상품 종류 수가 정확해야 한다.", 2, getOrder.getOrderItems().size());
+        assertEquals("주문상품은 상품 id 순이다.", book1.getId(), getOrder.getOrderItems().get(0).getItem().getId());
+        assertEquals("주문 가격은 상품별 가격 * 수량의 합이다.", 10000 * 3 + 20000, getOrder.getTotalPrice());
+        assertEquals("주문 수량만큼 재고가 줄어야 한다.", 7, book1.getStockQuantity());
+        assertEquals("주문 수량만큼 재고가 줄어야 한다.", 4, book2.getStockQuantity());
+    }
+
     private Book createBook(int price, int stockQuantity, String name) {
         Book book = new Book();
         book.setName(name);
@@ -91,4 +118,46 @@ public class OrderServiceTest {
         assertEquals("주문 상태는 CANCEL", OrderStatus.CANCEL, getOrder.getStatus());
         assertEquals("주문이 취소된 상품은 그만큼 재고가 증가해야하 한다.", 10, item.getStockQuantity());
     }
-}
\ No newline at end of file
+
+    @Test
+    public void 주문일괄취소() throws Exception{
+        // given
+        Member member = createMember();
+        Book book1 = createBook(10000, 10, "시골 JPA");
+        Book book2 = createBook(20000, 10, "시골 Spring");
+        Long orderId1 = orderService.order(member.getId(), book1.getId(), 2);
+        Map<Long, Integer> itemCounts = new LinkedHashMap<>();
+        itemCounts.put(book1.getId(), 3);
+        itemCounts.put(book2.getId(), 4);
+        Long orderId2 = orderService.order(member.getId(), itemCounts);
+        Long canceledId = orderService.order(member.getId(), book2.getId(), 1);
+        orderService.cancelOrder(canceledId);
+
+        // when
+        List<OrderResult> results = orderService.cancelOrders(Arrays.asList(orderId2, orderId1, canceledId, -1L));
+
+        // then
+        assertTrue("취소 가능한 주문은 취소된다.", results.get(0).isSuccess() && results.get(1).isSuccess());
+        assertFalse("이미 취소된 주문은 실패한다.", results.get(2).isSuccess());
+        assertFalse("없는 주문은 실패한다.", results.get(3).isSuccess());
+        assertEquals("주문 상태는 CANCEL", OrderStatus.CANCEL, orderRepository.findOne(orderId1).getStatus());
+        assertEquals("주문 상태는 CANCEL", OrderStatus.CANCEL, orderRepository.findOne(orderId2).getStatus());
+        assertEquals("취소된 수량만큼 재고가 증가해야 한다.", 10, em.find(Book.class, book1.getId()).getStockQuantity());
+        assertEquals("취소된 수량만큼 재고가 증가해야 한다.", 10, em.find(Book.class, book2.getId()).getStockQuantity());
+    }
+
+    @Test
+    public void 주문시_회원_주문목록_로딩안함() throws Exception{
+        Member member = createMember();
+        Item item = createBook(10000, 10, "JPA 신남");
+        orderService.order(member.getId(), item.getId(), 1);
+        em.flush();
+        em.clear();
+
+        orderService.order(member.getId(), item.getId(), 1);
+
+        Member findMember = em.find(Member.class, member.getId());
+        assertFalse("주문 생성시 회원의 주문 목록 전체를 로딩하면 안된다.", Hibernate.isInitialized(findMember.getOrders()));
+        assertEquals("초기화 후에는 새 주문까지 포함되어야 한다.", 2, findMember.getOrders().size());
+    }
+}
@@ -0,0 +1,258 @@
+package jpabook.jpashop.service;
+
+import jpabook.jpashop.domain.item.Book;
+import jpabook.jpashop.exception.NotEnoughStockException;
+import org.junit.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
+import static org.mockito.Mockito.mock;
+
+public class StockReservationEngineTest {
+
+    StockReservationEngine engine = new StockReservationEngine(null, null, true);
+
+    @Test
+    public void 동시주문_재고만큼만_예약() throws Exception {
+        Book book = createBook(1L, 50);
+        int threads = 100;
+        AtomicInteger success = new AtomicInteger();
+        AtomicInteger fail = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(16);
+
+        for (int i = 0; i < threads; i++) {
+            executor.submit(() -> {
+                start.await();
+                try {
+                    engine.reserve(book, 1);
+                    success.incrementAndGet();
+                } catch (NotEnoughStockException e) {
+                    fail.incrementAndGet();
+                }
+                return null;
+            });
+        }
+        start.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+        assertEquals("재고 수량만큼만 예약되어야 한다.", 50, success.get());
+        assertEquals(50, fail.get());
+        assertEquals(0, engine.getAvailable(book.getId()));
+        assertEquals("트랜잭션 밖의 예약은 바로 변경량에 쌓인다.", -50, engine.getPendingDelta(book.getId()));
+    }
+
+    @Test
+    public void 취소하면_재고_반환() throws Exception {
+        Book book = createBook(2L, 10);
+
+        engine.reserve(book, 3);
+        engine.release(book, 3);
+
+        assertEquals(10, engine.getAvailable(book.getId()));
+        assertEquals(0, engine.getPendingDelta(book.getId()));
+    }
+
+    @Test(expected = NotEnoughStockException.class)
+    public void 재고수량초과() throws Exception {
+        Book book = createBook(3L, 10);
+
+        engine.reserve(book, 11);
+
+        fail("재고 수량 부족 예외가 발생해야한다.");
+    }
+
+    @Test
+    public void 여러_칸에_나뉜_재고도_한번에_예약() throws Exception {
+        //given
+        Book book = createBook(6L, 5);
+
+        //when
+        engine.reserve(book, 5);
+
+        //then
+        assertEquals("다른 칸의 재고를 빌려와야 한다.", 0, engine.getAvailable(book.getId()));
+        assertEquals(-5, engine.getPendingDelta(book.getId()));
+    }
+
+    @Test
+    public void 동시_예약과_롤백이_섞여도_재고가_음수가_되지않음() throws Exception {
+        //given
+        Book book = createBook(7L, 100);
+        AtomicInteger committed = new AtomicInteger();
+        AtomicBoolean negative = new AtomicBoolean();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+
+        //when
+        for (int i = 0; i < 8; i++) {
+            boolean rollback = i % 2 == 0;
+            executor.submit(() -> {
+                start.await();
+                for (int j = 0; j < 200; j++) {
+                    TransactionSynchronizationManager.initSynchronization();
+                    try {
+                        try {
+                            engine.reserve(book, 3);
+                        } catch (NotEnoughStockException e) {
+                            continue;
+                        }
+                        if (engine.getAvailable(book.getId()) < 0) {
+                            negative.set(true);
+                        }
+                        complete(rollback ? TransactionSynchronization.STATUS_ROLLED_BACK : TransactionSynchronization.STATUS_COMMITTED);
+                        if (!rollback) {
+                            committed.addAndGet(3);
+                        }
+                    } finally {
+                        TransactionSynchronizationManager.clearSynchronization();
+                    }
+                }
+                return null;
+            });
+        }
+        start.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+        //then
+        assertFalse("가용 재고는 0 아래로 내려가면 안 된다.", negative.get());
+        assertEquals("롤백한 예약은 모두 돌아와야 한다.", 100 - committed.get(), engine.getAvailable(book.getId()));
+        assertEquals("커밋된 예약만 변경량에 남아야 한다.", -committed.get(), engine.getPendingDelta(book.getId()));
+        assertTrue(committed.get() > 90);
+    }
+
+    @Test
+    public void 재고수정중_flush와_예약이_겹쳐도_DB와_카운터가_일치() throws Exception {
+        //given
+        Book book = createBook(4L, 100);
+        AtomicInteger dbStock = new AtomicInteger(100);
+        StockReservationEngine engine = new StockReservationEngine(
+                new FakeItemTable(dbStock), mock(EntityManagerFactory.class, RETURNS_DEEP_STUBS), true);
+
+        AtomicBoolean running = new AtomicBoolean(true);
+        ExecutorService executor = Executors.newFixedThreadPool(5);
+        for (int i = 0; i < 4; i++) {
+            executor.submit(() -> {
+                while (running.get()) {
+                    inTransaction(() -> {
+                        engine.reserve(book, 1);
+                        sleep(1);
+                    });
+                }
+                return null;
+            });
+        }
+        executor.submit(() -> {
+            while (running.get()) {
+                engine.flush();
+            }
+            return null;
+        });
+
+        //when
+        sleep(50);
+        inTransaction(() -> {
+            engine.reset(book, 1000);
+            sleep(20);
+            dbStock.set(1000);
+        });
+        sleep(50);
+        running.set(false);
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        engine.flush();
+
+        //then
+        assertEquals("reset 이후에는 이전 변경량이 새 재고에 더해지면 안 된다.", dbStock.get(), engine.getAvailable(book.getId()));
+        assertEquals(0, engine.getPendingDelta(book.getId()));
+        assertTrue("reset 이후 예약만 새 재고에서 빠져야 한다.", dbStock.get() > 100);
+    }
+
+    @Test
+    public void 재고수정_롤백하면_변경량_복구() throws Exception {
+        //given
+        Book book = createBook(5L, 10);
+        engine.reserve(book, 3);
+
+        //when
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            assertEquals("꺼낸 변경량을 돌려준다.", -3, engine.reset(book, 20));
+            assertEquals(0, engine.getPendingDelta(book.getId()));
+            complete(TransactionSynchronization.STATUS_ROLLED_BACK);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        //then
+        assertEquals(7, engine.getAvailable(book.getId()));
+        assertEquals(-3, engine.getPendingDelta(book.getId()));
+    }
+
+    // 트랜잭션 동기화만 흉내 냄 - 예외가 나면 롤백으로 완료
+    private static void inTransaction(Runnable body) {
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            try {
+                body.run();
+            } catch (NotEnoughStockException e) {
+                complete(TransactionSynchronization.STATUS_ROLLED_BACK);
+                return;
+            }
+            complete(TransactionSynchronization.STATUS_COMMITTED);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    private static void complete(int status) {
+        TransactionSynchronizationManager.getSynchronizations().forEach(s -> s.afterCompletion(status));
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // flush 의 batch UPDATE 를 메모리의 재고에 반영
+    static class FakeItemTable extends JdbcTemplate {
+
+        private final AtomicInteger stock;
+
+        FakeItemTable(AtomicInteger stock) {
+            this.stock = stock;
+        }
+
+        @Override
+        public int[] batchUpdate(String sql, List<Object[]> batchArgs) {
+            batchArgs.forEach(args -> stock.addAndGet((Integer) args[0]));
+            sleep(1);
+            return new int[batchArgs.size()];
+        }
+    }
+
+    private Book createBook(Long id, int stockQuantity) {
+        Book book = new Book();
+        book.setId(id);
+        book.setName("시골 JPA");
+        book.setStockQuantity(stockQuantity);
+        return book;
+    }
+}